@@ -1,6 +1,5 @@
 package io.quarkus.qute.debug;
 
-import io.quarkus.qute.debug.agent.RemoteStackFrame;
 import org.eclipse.lsp4j.debug.*;
 import org.eclipse.lsp4j.debug.Thread;
 
@@ -17,15 +16,58 @@ public interface Debugger {
 
     void pause(long threadId) ;
 
+    /**
+     * Pauses all debuggee threads at their next template node.
+     */
+    void pauseAll();
+
     void resume(long threadId) ;
 
+    /**
+     * Resumes all suspended debuggee threads.
+     */
+    void resumeAll();
+
     Breakpoint[] setBreakpoints(SourceBreakpoint[] sourceBreakpoints, Source source);
 
+    /**
+     * Returns the information about the data breakpoint which can be set on the given variable / expression.
+     *
+     * @param args the variable / expression.
+     * @return the information about the data breakpoint, with a null data id if no data breakpoint can be set.
+     */
+    DataBreakpointInfoResponse getDataBreakpointInfo(DataBreakpointInfoArguments args);
+
+    /**
+     * Replaces the data breakpoints, which suspend a render thread when the value of an expression changes.
+     *
+     * @param dataBreakpoints the data breakpoints.
+     * @return the data breakpoints.
+     */
+    Breakpoint[] setDataBreakpoints(DataBreakpoint[] dataBreakpoints);
+
+    /**
+     * Sets the exception breakpoints, which suspend a render thread at the template node
+     * which fails to be resolved.
+     *
+     * @param filters the ids of the enabled exception filters.
+     * @return the exception breakpoints.
+     */
+    Breakpoint[] setExceptionBreakpoints(String[] filters);
+
+    /**
+     * Returns the resolution error which has suspended the given thread.
+     *
+     * @param threadId the thread id.
+     * @return the resolution error which has suspended the given thread or null.
+     */
+    Throwable getException(long threadId);
+
     Thread[] getThreads() ;
 
     Thread getThread(long threadId) ;
 
-    List<RemoteStackFrame> getStackFrames(long threadId);
+    List<? extends StackFrame> getStackFrames(long threadId);
 
     /**
      * Returns the variable scopes for the given stackframe ID <code>frameId</code>.
@@ -58,6 +100,21 @@ public interface Debugger {
 
     void next(long threadId) ;
 
+    /**
+     * Moves the suspended thread one template node back in its execution history.
+     *
+     * @param threadId the thread id.
+     */
+    void stepBack(long threadId);
+
+    /**
+     * Moves the suspended thread back in its execution history to the last node which has a
+     * breakpoint, or to the oldest recorded node.
+     *
+     * @param threadId the thread id.
+     */
+    void reverseContinue(long threadId);
+
     CompletionsResponse completions(CompletionsArguments args);
 
     void addDebuggerListener(DebuggerListener listener) ;
@@ -1,5 +1,6 @@
 package io.quarkus.qute.debug;
 
+import org.eclipse.lsp4j.debug.Breakpoint;
 import org.eclipse.lsp4j.debug.OutputEventArguments;
 
 import java.rmi.Remote;
@@ -14,4 +15,6 @@ public interface DebuggerListener extends Remote {
 
     void onTerminate() ;
 
+    void onBreakpointChanged(Breakpoint breakpoint) ;
+
 }
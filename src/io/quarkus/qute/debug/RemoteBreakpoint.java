@@ -2,29 +2,137 @@ package io.quarkus.qute.debug;
 
 import io.quarkus.qute.TemplateNode;
 import io.quarkus.qute.debug.agent.RemoteStackFrame;
+import io.quarkus.qute.debug.agent.condition.HitCondition;
+import io.quarkus.qute.debug.agent.condition.RateLimiter;
+import io.quarkus.qute.debug.agent.logpoint.LogMessage;
 import org.eclipse.lsp4j.debug.Breakpoint;
 import org.eclipse.lsp4j.debug.Source;
+import org.eclipse.lsp4j.debug.SourceBreakpoint;
+
+import java.util.concurrent.atomic.LongAdder;
 
 import static io.quarkus.qute.debug.agent.condition.ConditionalExpressionHelper.parseCondition;
 
 /**
  * Information about a Breakpoint created in setBreakpoints.
  */
-public class RemoteBreakpoint extends Breakpoint {
+public final class RemoteBreakpoint extends Breakpoint {
+
+    /**
+     * Breakpoint mode of the snapshot breakpoints.
+     */
+    public static final String SNAPSHOT_MODE = "snapshot";
 
     private final transient String condition;
     private transient TemplateNode ifNode;
+    private final transient LogMessage logMessage;
+    private final transient RateLimiter logRateLimiter;
+    private final transient boolean snapshot;
+    private transient HitCondition hitCondition;
+    private transient boolean valid;
+
+    // Hits which have not stopped the thread (hit condition, suspension budget), reported in the message
+    private final transient LongAdder skippedHits;
 
     public RemoteBreakpoint(Source source, int line, String condition) {
+        this(source, line, condition, null, 0, false, null);
+    }
+
+    /**
+     * @param source the template source.
+     * @param sourceBreakpoint the DAP source breakpoint.
+     * @param logRateLimit the maximum number of messages logged per second by a logpoint, 0 for no limit.
+     */
+    public RemoteBreakpoint(Source source, SourceBreakpoint sourceBreakpoint, int logRateLimit) {
+        this(source, sourceBreakpoint.getLine(), sourceBreakpoint.getCondition(), sourceBreakpoint.getLogMessage(),
+                logRateLimit, SNAPSHOT_MODE.equals(sourceBreakpoint.getMode()), sourceBreakpoint.getHitCondition());
+    }
+
+    private RemoteBreakpoint(Source source, int line, String condition, String logMessage, int logRateLimit,
+            boolean snapshot, String hitCondition) {
         super.setLine(line);
         super.setSource(source);
         this.condition = condition;
+        this.logMessage = logMessage != null ? LogMessage.parse(logMessage) : null;
+        this.logRateLimiter = logMessage != null && logRateLimit > 0 ? new RateLimiter(logRateLimit) : null;
+        this.snapshot = snapshot;
+        this.skippedHits = new LongAdder();
+        this.valid = true;
+        if (hitCondition != null && !hitCondition.isBlank()) {
+            try {
+                this.hitCondition = HitCondition.parse(hitCondition);
+            } catch (IllegalArgumentException e) {
+                super.setMessage(e.getMessage());
+                this.valid = false;
+            }
+        }
+    }
+
+    /**
+     * Returns false if the hit condition of the breakpoint is not valid.
+     *
+     * @return false if the hit condition of the breakpoint is not valid.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Counts a hit which has not stopped the thread (hit condition, suspension budget).
+     */
+    public void onSkippedHit() {
+        skippedHits.increment();
+    }
+
+    /**
+     * Updates the message of the breakpoint with the number of skipped hits, before it is sent
+     * to the client in a changed breakpoint event.
+     */
+    public void updateSkippedHitsMessage() {
+        super.setMessage(skippedHits.sum() + " hit(s) skipped.");
     }
 
     public String getCondition() {
         return condition;
     }
 
+    /**
+     * Returns the message to log if this breakpoint is a logpoint and null otherwise.
+     *
+     * @return the message to log if this breakpoint is a logpoint and null otherwise.
+     */
+    public LogMessage getLogMessage() {
+        return logMessage;
+    }
+
+    /**
+     * Returns true if this breakpoint takes a snapshot of the variables instead of suspending the thread.
+     *
+     * @return true if this breakpoint is a snapshot breakpoint.
+     */
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns true if the rate limit of the logpoint allows to log a message.
+     *
+     * @return true if the rate limit of the logpoint allows to log a message.
+     */
+    public boolean tryLog() {
+        return logRateLimiter == null || logRateLimiter.tryAcquire();
+    }
+
+    /**
+     * Counts a hit of the breakpoint and returns true if the hit condition allows the breakpoint to stop.
+     * It must be checked before the condition, which is more expensive to evaluate.
+     *
+     * @return true if the hit condition allows the breakpoint to stop.
+     */
+    public boolean checkHitCondition() {
+        return hitCondition == null || hitCondition.test();
+    }
+
     public boolean checkCondition(RemoteStackFrame frame) {
         String condition = getCondition();
         if (condition == null || condition.isBlank()) {
@@ -0,0 +1,63 @@
+package io.quarkus.qute.debug;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.debug.agent.RemoteStackFrame;
+import io.quarkus.qute.debug.agent.condition.HitCondition;
+import org.eclipse.lsp4j.debug.Breakpoint;
+import org.eclipse.lsp4j.debug.DataBreakpoint;
+
+import static io.quarkus.qute.debug.agent.condition.ConditionalExpressionHelper.parseCondition;
+
+/**
+ * Information about a data breakpoint created in setDataBreakpoints: the breakpoint is hit
+ * when the value of its expression changes and its condition, if any, is true.
+ */
+public final class RemoteDataBreakpoint extends Breakpoint {
+
+    private final transient String expression;
+    private final transient String condition;
+    private transient TemplateNode ifNode;
+    private transient HitCondition hitCondition;
+
+    public RemoteDataBreakpoint(DataBreakpoint dataBreakpoint) {
+        this.expression = dataBreakpoint.getDataId();
+        this.condition = dataBreakpoint.getCondition();
+        String hitCondition = dataBreakpoint.getHitCondition();
+        if (hitCondition != null && !hitCondition.isBlank()) {
+            try {
+                this.hitCondition = HitCondition.parse(hitCondition);
+            } catch (IllegalArgumentException e) {
+                super.setMessage(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the watched expression, which is the data id of the breakpoint.
+     *
+     * @return the watched expression.
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getCondition() {
+        return condition;
+    }
+
+    public boolean checkHitCondition() {
+        return hitCondition == null || hitCondition.test();
+    }
+
+    public boolean checkCondition(RemoteStackFrame frame) {
+        if (condition == null || condition.isBlank()) {
+            return true;
+        }
+        if (ifNode == null) {
+            ifNode = parseCondition(condition);
+        }
+        return (boolean) frame.evaluateCondition(ifNode, true)
+                .toCompletableFuture()
+                .getNow(false);
+    }
+}
@@ -0,0 +1,47 @@
+package io.quarkus.qute.debug;
+
+import org.eclipse.lsp4j.debug.Breakpoint;
+import org.eclipse.lsp4j.debug.Source;
+
+/**
+ * Performance breakpoint which is hit after a template node has been resolved when the
+ * resolution took longer than a threshold.
+ * <p>
+ * A slow node breakpoint without source applies to all templates and a slow node breakpoint
+ * without line applies to all the lines of its template.
+ */
+public final class SlowNodeBreakpoint extends Breakpoint {
+
+    public static final SlowNodeBreakpoint[] EMPTY_SLOW_NODE_BREAKPOINTS = new SlowNodeBreakpoint[0];
+
+    private final transient String templateId;
+    private final transient long thresholdNanos;
+    private final transient boolean suspend;
+
+    /**
+     * @param source the source of the template, or null for all templates.
+     * @param templateId the template id of the source, or null for all templates.
+     * @param line the line, or null for all lines.
+     * @param thresholdNanos the resolution time in nanoseconds above which the breakpoint is hit.
+     * @param suspend true to suspend the thread, false to only send an output event.
+     */
+    public SlowNodeBreakpoint(Source source, String templateId, Integer line, long thresholdNanos, boolean suspend) {
+        super.setSource(source);
+        super.setLine(line);
+        this.templateId = templateId;
+        this.thresholdNanos = thresholdNanos;
+        this.suspend = suspend;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    public boolean isSuspend() {
+        return suspend;
+    }
+}
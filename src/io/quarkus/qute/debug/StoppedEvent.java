@@ -18,6 +18,7 @@ public class StoppedEvent implements Serializable {
         STEP, //
         BREAKPOINT, //
         EXCEPTION, //
+        DATA_BREAKPOINT, //
         PAUSE;
     }
 
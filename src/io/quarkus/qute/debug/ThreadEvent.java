@@ -3,7 +3,8 @@ package io.quarkus.qute.debug;
 import java.io.Serializable;
 
 /**
- * Thread event thrown when a debuggee Thread is started or exited.
+ * Thread event thrown when a debuggee Thread is started, exited or continued
+ * without a request of the client.
  *
  */
 public class ThreadEvent implements Serializable {
@@ -12,7 +13,8 @@ public class ThreadEvent implements Serializable {
 
     public enum ThreadStatus {
         STARTED, //
-        EXITED;
+        EXITED, //
+        CONTINUED;
     }
 
     private final long threadId;
@@ -0,0 +1,33 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Arguments of the custom 'quteCoverage' DAP request.
+ */
+public class CoverageArguments {
+
+    /**
+     * Path of the file where the LCOV report is written, or null to return the report in the response.
+     */
+    private String file;
+
+    /**
+     * Removes the recorded lines after the dump if true.
+     */
+    private Boolean reset;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+}
@@ -0,0 +1,33 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Response of the custom 'quteCoverage' DAP request.
+ */
+public class CoverageResponse {
+
+    /**
+     * Path of the written LCOV file, or null if the report is returned in {@link #lcov}.
+     */
+    private String file;
+
+    /**
+     * The LCOV report, or null if it has been written in {@link #file}.
+     */
+    private String lcov;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getLcov() {
+        return lcov;
+    }
+
+    public void setLcov(String lcov) {
+        this.lcov = lcov;
+    }
+}
@@ -0,0 +1,264 @@
+package io.quarkus.qute.debug.adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor used by {@link DebugServerAdapter} to handle the DAP requests.
+ * <p>
+ * Requests which update the debugger state (writes) are executed in the order
+ * in which they are received:
+ * <ul>
+ * <li>writes targeting a DAP thread id (continue, pause, step...) are serialized
+ * per thread id,</li>
+ * <li>global writes (setBreakpoints, terminate...) wait for all the previous
+ * writes and are awaited by all the next requests.</li>
+ * </ul>
+ * Requests which only read the debugger state (threads, stackTrace, variables...)
+ * wait for the previous writes (global writes and, for a read which doesn't target a
+ * DAP thread id, the pending writes of all threads) but run concurrently between them.
+ * A write waits for the reads in progress which may access the frames of its thread
+ * (the reads targeting its thread id and the reads which don't target a thread id), so
+ * that a thread is not resumed while its frames are read.
+ * <p>
+ * By default, requests are executed on virtual threads to avoid competing with
+ * the application for the {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+ * The virtual thread executor is shut down with {@link #shutdown()} when the debug
+ * session ends and created again by the first request of the next session.
+ */
+public class DebugRequestExecutor {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    // Null when the requests are executed on virtual threads
+    private final Executor executor;
+
+    private ExecutorService virtualThreadExecutor;
+
+    // Last global write
+    private CompletableFuture<?> globalTail;
+
+    // Last write per DAP thread id
+    private final Map<Integer, CompletableFuture<?>> threadTails;
+
+    // Reads in progress per DAP thread id (null key for the reads which don't target a thread id)
+    private final Map<Integer, List<CompletableFuture<?>>> threadReads;
+
+    private final AtomicInteger queueDepth;
+
+    private final Map<String, RequestMetrics> metrics;
+
+    public DebugRequestExecutor() {
+        this(null);
+    }
+
+    public DebugRequestExecutor(Executor executor) {
+        this.executor = executor;
+        this.globalTail = DONE;
+        this.threadTails = new HashMap<>();
+        this.threadReads = new HashMap<>();
+        this.queueDepth = new AtomicInteger();
+        this.metrics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Executes a request which reads the debugger state.
+     *
+     * @param request the DAP request name.
+     * @param threadId the DAP thread id targeted by the request or null.
+     * @param task the request task.
+     * @return the result of the request.
+     */
+    public <T> CompletableFuture<T> read(String request, Integer threadId, Supplier<T> task) {
+        return readAsync(request, threadId, () -> CompletableFuture.completedFuture(task.get()));
+    }
+
+    /**
+     * Executes a request which reads the debugger state and completes asynchronously
+     * (evaluate...). The latency of the request includes the completion of the future
+     * returned by the task.
+     *
+     * @param request the DAP request name.
+     * @param threadId the DAP thread id targeted by the request or null.
+     * @param task the request task.
+     * @return the result of the request.
+     */
+    public synchronized <T> CompletableFuture<T> readAsync(String request, Integer threadId,
+            Supplier<CompletableFuture<T>> task) {
+        List<CompletableFuture<?>> dependencies = new ArrayList<>(2);
+        dependencies.add(globalTail);
+        if (threadId != null) {
+            var threadTail = threadTails.get(threadId);
+            if (threadTail != null) {
+                dependencies.add(threadTail);
+            }
+        } else {
+            // The request may read the state of any thread
+            dependencies.addAll(threadTails.values());
+        }
+        CompletableFuture<T> result = schedule(request, dependencies, task);
+        threadReads.computeIfAbsent(threadId, k -> new ArrayList<>()).add(result);
+        result.whenComplete((r, e) -> removeThreadRead(threadId, result));
+        return result;
+    }
+
+    /**
+     * Executes a request which updates the debugger state.
+     *
+     * @param request the DAP request name.
+     * @param threadId the DAP thread id targeted by the request or null if the request is global.
+     * @param task the request task.
+     * @return the result of the request.
+     */
+    public synchronized <T> CompletableFuture<T> write(String request, Integer threadId, Supplier<T> task) {
+        List<CompletableFuture<?>> dependencies = new ArrayList<>();
+        dependencies.add(globalTail);
+        CompletableFuture<T> result;
+        if (threadId == null) {
+            // Global write: wait for all pending writes and reads
+            dependencies.addAll(threadTails.values());
+            threadTails.clear();
+            threadReads.values().forEach(dependencies::addAll);
+            result = schedule(request, dependencies, () -> CompletableFuture.completedFuture(task.get()));
+            globalTail = result;
+        } else {
+            var threadTail = threadTails.get(threadId);
+            if (threadTail != null) {
+                dependencies.add(threadTail);
+            }
+            // Don't resume the thread while its frames are read
+            dependencies.addAll(threadReads.getOrDefault(threadId, List.of()));
+            dependencies.addAll(threadReads.getOrDefault(null, List.of()));
+            CompletableFuture<T> threadResult = schedule(request, dependencies,
+                    () -> CompletableFuture.completedFuture(task.get()));
+            threadTails.put(threadId, threadResult);
+            threadResult.whenComplete((r, e) -> removeThreadTail(threadId, threadResult));
+            result = threadResult;
+        }
+        return result;
+    }
+
+    public CompletableFuture<Void> write(String request, Integer threadId, Runnable task) {
+        return write(request, threadId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private synchronized void removeThreadTail(Integer threadId, CompletableFuture<?> tail) {
+        threadTails.remove(threadId, tail);
+    }
+
+    private synchronized void removeThreadRead(Integer threadId, CompletableFuture<?> read) {
+        List<CompletableFuture<?>> reads = threadReads.get(threadId);
+        if (reads != null && reads.remove(read) && reads.isEmpty()) {
+            threadReads.remove(threadId);
+        }
+    }
+
+    private synchronized void execute(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+            return;
+        }
+        if (virtualThreadExecutor == null) {
+            virtualThreadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        virtualThreadExecutor.execute(task);
+    }
+
+    /**
+     * Shuts down the virtual thread executor once its running requests are done. The
+     * next requests are executed by a new virtual thread executor.
+     */
+    public synchronized void shutdown() {
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+            virtualThreadExecutor = null;
+        }
+    }
+
+    private <T> CompletableFuture<T> schedule(String request, List<CompletableFuture<?>> dependencies,
+            Supplier<CompletableFuture<T>> task) {
+        long start = System.nanoTime();
+        queueDepth.incrementAndGet();
+        CompletableFuture<?> previous = dependencies.size() == 1 ? dependencies.get(0)
+                : CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]));
+        return previous
+                // A failed request must not block the next requests
+                .handle((r, e) -> null)
+                .thenComposeAsync(ignore -> task.get(), this::execute)
+                .whenComplete((r, e) -> {
+                    queueDepth.decrementAndGet();
+                    getMetrics(request).record(System.nanoTime() - start);
+                });
+    }
+
+    private RequestMetrics getMetrics(String request) {
+        return metrics.computeIfAbsent(request, k -> new RequestMetrics());
+    }
+
+    /**
+     * Returns the number of requests which are waiting or running.
+     *
+     * @return the number of requests which are waiting or running.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the metrics of the executed requests by DAP request name.
+     *
+     * @return the metrics of the executed requests by DAP request name.
+     */
+    public Map<String, RequestMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Latency metrics of a DAP request, measured from the reception of the request
+     * to its completion.
+     */
+    public static class RequestMetrics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getAverageNanos() {
+            long count = getCount();
+            return count > 0 ? getTotalNanos() / count : 0;
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package io.quarkus.qute.debug.adapter;
 
+import io.quarkus.qute.TemplateException;
 import io.quarkus.qute.debug.DebuggerListener;
+import io.quarkus.qute.debug.DebuggerState;
+import io.quarkus.qute.debug.RemoteBreakpoint;
+import io.quarkus.qute.debug.SlowNodeBreakpoint;
 import io.quarkus.qute.debug.StoppedEvent;
 import io.quarkus.qute.debug.ThreadEvent;
 import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import io.quarkus.qute.debug.agent.condition.ExceptionFilter;
+import io.quarkus.qute.debug.agent.coverage.TemplateCoverage;
+import io.quarkus.qute.debug.agent.profiler.ProfileEntry;
+import io.quarkus.qute.debug.agent.snapshot.SnapshotStore;
 import org.eclipse.lsp4j.debug.*;
 import org.eclipse.lsp4j.debug.Thread;
 import org.eclipse.lsp4j.debug.services.IDebugProtocolClient;
 import org.eclipse.lsp4j.debug.services.IDebugProtocolServer;
-
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static io.quarkus.qute.debug.agent.RemoteStackFrame.EMPTY_STACK_FRAMES;
 
@@ -23,12 +40,21 @@ import static io.quarkus.qute.debug.agent.RemoteStackFrame.EMPTY_STACK_FRAMES;
 public class DebugServerAdapter implements IDebugProtocolServer {
 
     private final DebuggeeAgent agent;
+    private final DebugRequestExecutor executor;
     private IDebugProtocolClient client;
 
+    // Template line coverage recorded when the 'qute.debug.coverage' environment variable is set
+    private volatile TemplateCoverage coverage;
+
     private final Map<Integer, Thread> threads = new HashMap<>();
 
     public DebugServerAdapter(DebuggeeAgent agent) {
+        this(agent, new DebugRequestExecutor());
+    }
+
+    public DebugServerAdapter(DebuggeeAgent agent, DebugRequestExecutor executor) {
         this.agent = agent;
+        this.executor = executor;
         agent.addDebuggerListener(new DebuggerListener() {
 
             @Override
@@ -53,19 +79,57 @@ public class DebugServerAdapter implements IDebugProtocolServer {
                 handleTerminate();
             }
 
+            @Override
+            public void onBreakpointChanged(Breakpoint breakpoint)  {
+                sendBreakpointEvent(breakpoint);
+            }
+
         });
     }
 
     @Override
     public CompletableFuture<Capabilities> initialize(InitializeRequestArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("initialize", null, () -> {
             Capabilities capabilities = new Capabilities();
             capabilities.setSupportsCompletionsRequest(Boolean.TRUE);
             capabilities.setSupportsConditionalBreakpoints(Boolean.TRUE);
+            capabilities.setSupportsHitConditionalBreakpoints(Boolean.TRUE);
+            capabilities.setSupportsExceptionInfoRequest(Boolean.TRUE);
+            capabilities.setSupportsDataBreakpoints(Boolean.TRUE);
+            capabilities.setExceptionBreakpointFilters(new ExceptionBreakpointsFilter[] {
+                    createExceptionFilter(ExceptionFilter.ALL, "All resolve errors"),
+                    createExceptionFilter(ExceptionFilter.NOT_FOUND, "Unresolved properties (NOT_FOUND)") });
+            capabilities.setSupportsLogPoints(Boolean.TRUE);
+            BreakpointMode snapshotMode = new BreakpointMode();
+            snapshotMode.setMode(RemoteBreakpoint.SNAPSHOT_MODE);
+            snapshotMode.setLabel("Snapshot");
+            snapshotMode.setDescription("Copies the variables and continues the render");
+            snapshotMode.setAppliesTo(new String[] { BreakpointModeApplicability.SOURCE });
+            capabilities.setBreakpointModes(new BreakpointMode[] { snapshotMode });
+            capabilities.setSupportsSingleThreadExecutionRequests(Boolean.TRUE);
+            // The step back replays the execution history recorded by the render threads
+            capabilities.setSupportsStepBack(agent.getHistorySize() > 0);
             return capabilities;
         });
     }
 
+    private static ExceptionBreakpointsFilter createExceptionFilter(String filter, String label) {
+        ExceptionBreakpointsFilter exceptionFilter = new ExceptionBreakpointsFilter();
+        exceptionFilter.setFilter(filter);
+        exceptionFilter.setLabel(label);
+        exceptionFilter.setDefault_(Boolean.FALSE);
+        return exceptionFilter;
+    }
+
+    /**
+     * Returns the executor used to handle the DAP requests.
+     *
+     * @return the executor used to handle the DAP requests.
+     */
+    public DebugRequestExecutor getRequestExecutor() {
+        return executor;
+    }
+
     public void connect(IDebugProtocolClient client) {
         this.client = client;
         this.agent.setEnabled(true);
@@ -73,14 +137,14 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     @Override
     public CompletableFuture<Void> attach(Map<String, Object> args) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.write("attach", null, () -> {
             client.initialized();
         });
     }
 
     @Override
     public CompletableFuture<SetBreakpointsResponse> setBreakpoints(SetBreakpointsArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.write("setBreakpoints", null, () -> {
             SetBreakpointsResponse response = new SetBreakpointsResponse();
             Source source = args.getSource();
             SourceBreakpoint[] sourceBreakpoints = args.getBreakpoints();
@@ -90,9 +154,61 @@ public class DebugServerAdapter implements IDebugProtocolServer {
         });
     }
 
+    @Override
+    public CompletableFuture<DataBreakpointInfoResponse> dataBreakpointInfo(DataBreakpointInfoArguments args) {
+        return executor.read("dataBreakpointInfo", null, () -> agent.getDataBreakpointInfo(args));
+    }
+
+    @Override
+    public CompletableFuture<SetDataBreakpointsResponse> setDataBreakpoints(SetDataBreakpointsArguments args) {
+        return executor.write("setDataBreakpoints", null, () -> {
+            SetDataBreakpointsResponse response = new SetDataBreakpointsResponse();
+            response.setBreakpoints(agent.setDataBreakpoints(args.getBreakpoints()));
+            return response;
+        });
+    }
+
+    @Override
+    public CompletableFuture<SetExceptionBreakpointsResponse> setExceptionBreakpoints(SetExceptionBreakpointsArguments args) {
+        return executor.write("setExceptionBreakpoints", null, () -> {
+            SetExceptionBreakpointsResponse response = new SetExceptionBreakpointsResponse();
+            response.setBreakpoints(agent.setExceptionBreakpoints(args.getFilters()));
+            return response;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExceptionInfoResponse> exceptionInfo(ExceptionInfoArguments args) {
+        return executor.read("exceptionInfo", args.getThreadId(), () -> {
+            Throwable exception = agent.getException(args.getThreadId());
+            if (exception == null) {
+                ResponseError re = new ResponseError();
+                re.setCode(ResponseErrorCode.InvalidRequest);
+                re.setMessage("Thread '" + args.getThreadId() + "' is not suspended by an exception.");
+                throw new ResponseErrorException(re);
+            }
+            String codeName = exception instanceof TemplateException templateException
+                    ? templateException.getCodeName().orElse(null)
+                    : null;
+            ExceptionInfoResponse response = new ExceptionInfoResponse();
+            response.setExceptionId(codeName != null ? codeName : exception.getClass().getSimpleName());
+            response.setDescription(exception.getMessage());
+            response.setBreakMode(ExceptionBreakMode.ALWAYS);
+            ExceptionDetails details = new ExceptionDetails();
+            details.setMessage(exception.getMessage());
+            details.setTypeName(exception.getClass().getSimpleName());
+            details.setFullTypeName(exception.getClass().getName());
+            StringWriter stackTrace = new StringWriter();
+            exception.printStackTrace(new PrintWriter(stackTrace));
+            details.setStackTrace(stackTrace.toString());
+            response.setDetails(details);
+            return response;
+        });
+    }
+
     @Override
     public CompletableFuture<ThreadsResponse> threads() {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("threads", null, () -> {
             ThreadsResponse response = new ThreadsResponse();
             response.setThreads(agent.getThreads());
             return response;
@@ -101,10 +217,16 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     @Override
     public CompletableFuture<StackTraceResponse> stackTrace(StackTraceArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("stackTrace", args.getThreadId(), () -> {
             StackTraceResponse response = new StackTraceResponse();
             int threadId = args.getThreadId();
             var stackFrames = agent.getStackFrames(threadId);
+            if (stackFrames == null) {
+                ResponseError re = new ResponseError();
+                re.setCode(ResponseErrorCode.InvalidRequest);
+                re.setMessage("Thread '" + threadId + "' doesn't exist.");
+                throw new ResponseErrorException(re);
+            }
             response.setStackFrames(stackFrames
                             .stream()
                             .toList()
@@ -116,7 +238,7 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     @Override
     public CompletableFuture<ScopesResponse> scopes(ScopesArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("scopes", null, () -> {
             ScopesResponse response = new ScopesResponse();
             int frameId = args.getFrameId();
             response.setScopes(agent.getScopes(frameId));
@@ -126,7 +248,7 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     @Override
     public CompletableFuture<VariablesResponse> variables(VariablesArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("variables", null, () -> {
             VariablesResponse response = new VariablesResponse();
             int variablesReference = args.getVariablesReference();
             response.setVariables(agent.getVariables(variablesReference));
@@ -136,76 +258,306 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     @Override
     public CompletableFuture<Void> terminate(TerminateArguments args) {
-        return CompletableFuture.runAsync(agent::terminate);
+        return executor.write("terminate", null, agent::terminate)
+                // The session is over: release the request threads
+                .whenComplete((r, e) -> executor.shutdown());
     }
 
     @Override
     public CompletableFuture<Void> disconnect(DisconnectArguments args) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.write("disconnect", null, () -> {
             try {
                 agent.terminate();
             }
             finally {
                 this.agent.setEnabled(false);
             }
-        });
+        }).whenComplete((r, e) -> executor.shutdown());
     }
 
     @Override
     public CompletableFuture<Void> stepIn(StepInArguments args) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.write("stepIn", args.getThreadId(), () -> {
+            checkSuspended(args.getThreadId());
             agent.stepIn(args.getThreadId());
         });
     }
 
     @Override
     public CompletableFuture<Void> stepOut(StepOutArguments args) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.write("stepOut", args.getThreadId(), () -> {
+            checkSuspended(args.getThreadId());
             agent.stepOut(args.getThreadId());
         });
     }
 
     @Override
     public CompletableFuture<Void> pause(PauseArguments args) {
-        return CompletableFuture.runAsync(() -> {
-            agent.pause(args.getThreadId());
+        int threadId = args.getThreadId();
+        if (threadId == 0) {
+            // No rendering thread to target: pause all threads (including the next renders)
+            return executor.write("pause", null, agent::pauseAll);
+        }
+        return executor.write("pause", threadId, () -> {
+            // The thread may have finished its render since the client has listed it
+            checkExists(threadId);
+            agent.pause(threadId);
         });
     }
 
     @Override
     public CompletableFuture<Void> next(NextArguments args) {
-        return CompletableFuture.runAsync(() -> {
+        return executor.write("next", args.getThreadId(), () -> {
+            checkSuspended(args.getThreadId());
             agent.next(args.getThreadId());
         });
     }
 
+    @Override
+    public CompletableFuture<Void> stepBack(StepBackArguments args) {
+        return executor.write("stepBack", args.getThreadId(), () -> {
+            checkSuspended(args.getThreadId());
+            agent.stepBack(args.getThreadId());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> reverseContinue(ReverseContinueArguments args) {
+        return executor.write("reverseContinue", args.getThreadId(), () -> {
+            checkSuspended(args.getThreadId());
+            agent.reverseContinue(args.getThreadId());
+        });
+    }
+
     @Override
     public CompletableFuture<ContinueResponse> continue_(ContinueArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        int threadId = args.getThreadId();
+        // Continuing the snapshots thread must not resume the render threads
+        boolean singleThread = threadId != 0 && (Boolean.TRUE.equals(args.getSingleThread()) || threadId == SnapshotStore.THREAD_ID);
+        return executor.write("continue", singleThread ? threadId : null, () -> {
             ContinueResponse response = new ContinueResponse();
-            int threadId = args.getThreadId();
-            if (threadId != 0) {
+            if (singleThread) {
+                if (threadId != SnapshotStore.THREAD_ID) {
+                    checkSuspended(threadId);
+                }
                 response.setAllThreadsContinued(Boolean.FALSE);
                 agent.resume(threadId);
             } else {
                 response.setAllThreadsContinued(Boolean.TRUE);
+                agent.resumeAll();
             }
             return response;
         });
     }
 
+    /**
+     * Rejects the step and continue requests of a thread which is not suspended: the thread may have
+     * been resumed or have finished its render since its stopped event has been sent.
+     *
+     * @param threadId the thread id.
+     */
+    private void checkExists(int threadId) {
+        if (agent.getThread(threadId) == null) {
+            ResponseError re = new ResponseError();
+            re.setCode(ResponseErrorCode.InvalidRequest);
+            re.setMessage("Thread '" + threadId + "' doesn't exist.");
+            throw new ResponseErrorException(re);
+        }
+    }
+
+    private void checkSuspended(int threadId) {
+        if (agent.getState(threadId) != DebuggerState.SUSPENDED) {
+            ResponseError re = new ResponseError();
+            re.setCode(ResponseErrorCode.InvalidRequest);
+            re.setMessage("Thread '" + threadId + "' is not suspended.");
+            throw new ResponseErrorException(re);
+        }
+    }
+
     @Override
     public CompletableFuture<EvaluateResponse> evaluate(EvaluateArguments args) {
-        return agent.evaluate(args.getFrameId(), args.getExpression());
+        return executor.readAsync("evaluate", null, () -> agent.evaluate(args.getFrameId(), args.getExpression()));
     }
 
     @Override
     public CompletableFuture<CompletionsResponse> completions(CompletionsArguments args) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.read("completions", null, () -> {
             return agent.completions(args);
         });
     }
 
+    /**
+     * Custom request which enables / disables the profiler and returns the latencies
+     * recorded by template line, so that the client can show the hot lines.
+     *
+     * @param args the profile arguments.
+     * @return the recorded latencies.
+     */
+    @JsonRequest("quteProfile")
+    public CompletableFuture<ProfileResponse> profile(ProfileArguments args) {
+        Boolean enabled = args != null ? args.getEnabled() : null;
+        Supplier<ProfileResponse> task = () -> {
+            if (enabled != null) {
+                agent.setProfilerEnabled(enabled);
+            }
+            var profiler = agent.getProfiler();
+            var entries = profiler.getEntries();
+            Integer limit = args != null ? args.getLimit() : null;
+            if (limit != null && limit >= 0 && limit < entries.size()) {
+                entries = entries.subList(0, limit);
+            }
+            if (args != null && Boolean.TRUE.equals(args.getReset())) {
+                profiler.reset();
+            }
+            ProfileResponse response = new ProfileResponse();
+            response.setEnabled(profiler.isEnabled());
+            response.setEntries(entries.toArray(new ProfileEntry[0]));
+            return response;
+        };
+        return enabled != null ? executor.write("quteProfile", null, task) : executor.read("quteProfile", null, task);
+    }
+
+    /**
+     * Custom request which enables / disables the flame graph collector and exports the
+     * collected stacks in the collapsed stack format.
+     *
+     * @param args the flame graph arguments.
+     * @return the state of the flame graph collector.
+     */
+    @JsonRequest("quteFlameGraph")
+    public CompletableFuture<FlameGraphResponse> flameGraph(FlameGraphArguments args) {
+        Integer sampleRate = args != null ? args.getSampleRate() : null;
+        Boolean enabled = args != null ? args.getEnabled() : null;
+        String file = args != null ? args.getFile() : null;
+        boolean reset = args != null && Boolean.TRUE.equals(args.getReset());
+        return executor.write("quteFlameGraph", null, () -> {
+            var flameGraph = agent.getFlameGraph();
+            if (sampleRate != null) {
+                flameGraph.setSampleRate(sampleRate);
+            }
+            if (enabled != null) {
+                agent.setFlameGraphEnabled(enabled);
+            }
+            if (file != null) {
+                try {
+                    flameGraph.export(Paths.get(file));
+                } catch (IOException e) {
+                    ResponseError re = new ResponseError();
+                    re.setCode(ResponseErrorCode.InternalError);
+                    re.setMessage("Cannot export the flame graph to '" + file + "': " + e.getMessage());
+                    throw new ResponseErrorException(re);
+                }
+            }
+            if (reset) {
+                flameGraph.reset();
+            }
+            FlameGraphResponse response = new FlameGraphResponse();
+            response.setEnabled(flameGraph.isEnabled());
+            response.setSampleRate(flameGraph.getSampleRate());
+            response.setFile(file);
+            return response;
+        });
+    }
+
+    public void setCoverage(TemplateCoverage coverage) {
+        this.coverage = coverage;
+    }
+
+    /**
+     * Custom request which dumps the template line coverage in the LCOV format, in a file
+     * or in the response.
+     *
+     * @param args the coverage arguments.
+     * @return the LCOV file or report.
+     */
+    @JsonRequest("quteCoverage")
+    public CompletableFuture<CoverageResponse> coverage(CoverageArguments args) {
+        Supplier<CoverageResponse> task = () -> {
+            TemplateCoverage coverage = this.coverage;
+            if (coverage == null) {
+                ResponseError re = new ResponseError();
+                re.setCode(ResponseErrorCode.InvalidRequest);
+                re.setMessage("The template coverage is not recorded, set the 'qute.debug.coverage' environment variable.");
+                throw new ResponseErrorException(re);
+            }
+            String file = args != null ? args.getFile() : null;
+            CoverageResponse response = new CoverageResponse();
+            try {
+                if (file != null) {
+                    coverage.writeLcov(Paths.get(file));
+                    response.setFile(file);
+                } else {
+                    StringWriter lcov = new StringWriter();
+                    coverage.writeLcov(lcov);
+                    response.setLcov(lcov.toString());
+                }
+            } catch (IOException e) {
+                ResponseError re = new ResponseError();
+                re.setCode(ResponseErrorCode.InternalError);
+                re.setMessage("Cannot write the template coverage to '" + file + "': " + e.getMessage());
+                throw new ResponseErrorException(re);
+            }
+            if (args != null && Boolean.TRUE.equals(args.getReset())) {
+                coverage.reset();
+            }
+            return response;
+        };
+        return args != null && Boolean.TRUE.equals(args.getReset()) ? executor.write("quteCoverage", null, task)
+                : executor.read("quteCoverage", null, task);
+    }
+
+    /**
+     * Custom request which returns the counters of the work done by the debuggee agent,
+     * to measure the overhead of the debugger on the rendering threads.
+     *
+     * @param args the metrics arguments.
+     * @return the counters of the agent.
+     */
+    @JsonRequest("quteMetrics")
+    public CompletableFuture<MetricsResponse> metrics(MetricsArguments args) {
+        boolean reset = args != null && Boolean.TRUE.equals(args.getReset());
+        Supplier<MetricsResponse> task = () -> {
+            var metrics = agent.getMetrics();
+            MetricsResponse response = new MetricsResponse(metrics);
+            if (reset) {
+                metrics.reset();
+            }
+            return response;
+        };
+        // Resetting the counters must not race with the reads of the other requests
+        return reset ? executor.write("quteMetrics", null, task) : executor.read("quteMetrics", null, task);
+    }
+
+    /**
+     * Custom request which replaces the slow node breakpoints, hit when a template node takes
+     * longer than a threshold to be resolved.
+     *
+     * @param args the slow node breakpoints arguments.
+     * @return the verified slow node breakpoints.
+     */
+    @JsonRequest("quteSetSlowNodeBreakpoints")
+    public CompletableFuture<SetBreakpointsResponse> setSlowNodeBreakpoints(SlowNodeBreakpointsArguments args) {
+        return executor.write("quteSetSlowNodeBreakpoints", null, () -> {
+            SlowNodeSourceBreakpoint[] sourceBreakpoints = args.getBreakpoints() != null ? args.getBreakpoints() : new SlowNodeSourceBreakpoint[0];
+            SlowNodeBreakpoint[] slowNodeBreakpoints = new SlowNodeBreakpoint[sourceBreakpoints.length];
+            for (int i = 0; i < sourceBreakpoints.length; i++) {
+                SlowNodeSourceBreakpoint sourceBreakpoint = sourceBreakpoints[i];
+                Source source = sourceBreakpoint.getSource();
+                String templateId = source != null ? agent.getSourceTemplateRegistry().getTemplateId(source) : null;
+                if (source != null && templateId == null) {
+                    // The source is not in a template base path, it must not match all templates
+                    templateId = source.getPath();
+                }
+                long thresholdNanos = (long) (sourceBreakpoint.getThresholdMillis() * 1_000_000);
+                slowNodeBreakpoints[i] = new SlowNodeBreakpoint(source, templateId, sourceBreakpoint.getLine(), thresholdNanos,
+                        Boolean.TRUE.equals(sourceBreakpoint.getSuspend()));
+            }
+            SetBreakpointsResponse response = new SetBreakpointsResponse();
+            response.setBreakpoints(agent.setSlowNodeBreakpoints(slowNodeBreakpoints));
+            return response;
+        });
+    }
+
     private void handleStopped(StoppedEvent event) {
         int threadId = (int) event.getThreadId();
         String reason = getReason(event.getReason());
@@ -217,6 +569,7 @@ public class DebugServerAdapter implements IDebugProtocolServer {
             case BREAKPOINT -> StoppedEventArgumentsReason.BREAKPOINT;
             case PAUSE -> StoppedEventArgumentsReason.PAUSE;
             case EXCEPTION -> StoppedEventArgumentsReason.EXCEPTION;
+            case DATA_BREAKPOINT -> StoppedEventArgumentsReason.DATA_BREAKPOINT;
             case STEP -> StoppedEventArgumentsReason.STEP;
             default -> null;
         };
@@ -224,6 +577,10 @@ public class DebugServerAdapter implements IDebugProtocolServer {
 
     public void handleThreadChanged(ThreadEvent event) {
         int threadId = (int) event.getThreadId();
+        if (event.getThreadStatus() == ThreadEvent.ThreadStatus.CONTINUED) {
+            sendContinuedEvent(threadId);
+            return;
+        }
         String reason = getReason(event.getThreadStatus());
         sendThreadEvent(threadId, reason);
 
@@ -233,6 +590,7 @@ public class DebugServerAdapter implements IDebugProtocolServer {
         return switch (threadStatus) {
             case STARTED -> ThreadEventArgumentsReason.STARTED;
             case EXITED -> ThreadEventArgumentsReason.EXITED;
+            default -> null;
         };
     }
 
@@ -256,6 +614,26 @@ public class DebugServerAdapter implements IDebugProtocolServer {
         client.thread(args);
     }
 
+    private void sendBreakpointEvent(Breakpoint breakpoint) {
+        if (client == null) {
+            return;
+        }
+        BreakpointEventArguments args = new BreakpointEventArguments();
+        args.setReason(BreakpointEventArgumentsReason.CHANGED);
+        args.setBreakpoint(breakpoint);
+        client.breakpoint(args);
+    }
+
+    private void sendContinuedEvent(int threadId) {
+        if (client == null) {
+            return;
+        }
+        ContinuedEventArguments args = new ContinuedEventArguments();
+        args.setThreadId(threadId);
+        args.setAllThreadsContinued(Boolean.FALSE);
+        client.continued(args);
+    }
+
     public void handleTerminate() {
         sendExitEvent();
     }
@@ -0,0 +1,59 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Arguments of the custom 'quteFlameGraph' DAP request.
+ */
+public class FlameGraphArguments {
+
+    /**
+     * Enables / disables the flame graph collector, or keeps its current state if null.
+     */
+    private Boolean enabled;
+
+    /**
+     * Traces one render out of sampleRate, or keeps the current sample rate if null.
+     */
+    private Integer sampleRate;
+
+    /**
+     * Path of the file where the collapsed stacks are exported, or no export if null.
+     */
+    private String file;
+
+    /**
+     * Removes the collected stacks after the export if true.
+     */
+    private Boolean reset;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Integer getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(Integer sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+}
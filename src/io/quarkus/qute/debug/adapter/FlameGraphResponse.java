@@ -0,0 +1,46 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Response of the custom 'quteFlameGraph' DAP request.
+ */
+public class FlameGraphResponse {
+
+    /**
+     * True if the flame graph collector is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * The current sample rate.
+     */
+    private int sampleRate;
+
+    /**
+     * Path of the exported file, or null if no export was requested.
+     */
+    private String file;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+}
@@ -0,0 +1,20 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Arguments of the custom 'quteMetrics' DAP request.
+ */
+public class MetricsArguments {
+
+    /**
+     * Resets the counters after building the response if true.
+     */
+    private Boolean reset;
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+}
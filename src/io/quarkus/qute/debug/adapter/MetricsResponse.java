@@ -0,0 +1,155 @@
+package io.quarkus.qute.debug.adapter;
+
+import io.quarkus.qute.debug.agent.AgentMetricsMBean;
+
+/**
+ * Response of the custom 'quteMetrics' DAP request: the counters of the work done by the debuggee agent.
+ */
+public class MetricsResponse {
+
+    /**
+     * Number of trace events processed by the agent.
+     */
+    private long eventsProcessed;
+
+    /**
+     * Number of stack frames created.
+     */
+    private long framesCreated;
+
+    /**
+     * Number of breakpoint lookups.
+     */
+    private long breakpointLookups;
+
+    /**
+     * Number of breakpoints hit (hit condition and condition matched).
+     */
+    private long breakpointHits;
+
+    /**
+     * Number of breakpoint conditions evaluated.
+     */
+    private long conditionEvaluations;
+
+    /**
+     * Time spent evaluating the breakpoint conditions in nanoseconds.
+     */
+    private long conditionEvaluationNanos;
+
+    /**
+     * Number of thread suspensions.
+     */
+    private long suspensions;
+
+    /**
+     * Time spent suspended by the threads in nanoseconds.
+     */
+    private long suspendedNanos;
+
+    /**
+     * Number of events dispatched to the debugger listeners.
+     */
+    private long listenerDispatches;
+
+    /**
+     * Time spent in the debugger listeners in nanoseconds.
+     */
+    private long listenerDispatchNanos;
+
+    public MetricsResponse() {
+    }
+
+    public MetricsResponse(AgentMetricsMBean metrics) {
+        this.eventsProcessed = metrics.getEventsProcessed();
+        this.framesCreated = metrics.getFramesCreated();
+        this.breakpointLookups = metrics.getBreakpointLookups();
+        this.breakpointHits = metrics.getBreakpointHits();
+        this.conditionEvaluations = metrics.getConditionEvaluations();
+        this.conditionEvaluationNanos = metrics.getConditionEvaluationNanos();
+        this.suspensions = metrics.getSuspensions();
+        this.suspendedNanos = metrics.getSuspendedNanos();
+        this.listenerDispatches = metrics.getListenerDispatches();
+        this.listenerDispatchNanos = metrics.getListenerDispatchNanos();
+    }
+
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    public void setEventsProcessed(long eventsProcessed) {
+        this.eventsProcessed = eventsProcessed;
+    }
+
+    public long getFramesCreated() {
+        return framesCreated;
+    }
+
+    public void setFramesCreated(long framesCreated) {
+        this.framesCreated = framesCreated;
+    }
+
+    public long getBreakpointLookups() {
+        return breakpointLookups;
+    }
+
+    public void setBreakpointLookups(long breakpointLookups) {
+        this.breakpointLookups = breakpointLookups;
+    }
+
+    public long getBreakpointHits() {
+        return breakpointHits;
+    }
+
+    public void setBreakpointHits(long breakpointHits) {
+        this.breakpointHits = breakpointHits;
+    }
+
+    public long getConditionEvaluations() {
+        return conditionEvaluations;
+    }
+
+    public void setConditionEvaluations(long conditionEvaluations) {
+        this.conditionEvaluations = conditionEvaluations;
+    }
+
+    public long getConditionEvaluationNanos() {
+        return conditionEvaluationNanos;
+    }
+
+    public void setConditionEvaluationNanos(long conditionEvaluationNanos) {
+        this.conditionEvaluationNanos = conditionEvaluationNanos;
+    }
+
+    public long getSuspensions() {
+        return suspensions;
+    }
+
+    public void setSuspensions(long suspensions) {
+        this.suspensions = suspensions;
+    }
+
+    public long getSuspendedNanos() {
+        return suspendedNanos;
+    }
+
+    public void setSuspendedNanos(long suspendedNanos) {
+        this.suspendedNanos = suspendedNanos;
+    }
+
+    public long getListenerDispatches() {
+        return listenerDispatches;
+    }
+
+    public void setListenerDispatches(long listenerDispatches) {
+        this.listenerDispatches = listenerDispatches;
+    }
+
+    public long getListenerDispatchNanos() {
+        return listenerDispatchNanos;
+    }
+
+    public void setListenerDispatchNanos(long listenerDispatchNanos) {
+        this.listenerDispatchNanos = listenerDispatchNanos;
+    }
+}
@@ -0,0 +1,46 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Arguments of the custom 'quteProfile' DAP request.
+ */
+public class ProfileArguments {
+
+    /**
+     * Enables / disables the profiler, or keeps its current state if null.
+     */
+    private Boolean enabled;
+
+    /**
+     * Removes the recorded latencies after building the response if true.
+     */
+    private Boolean reset;
+
+    /**
+     * Maximum number of entries to return (the entries with the highest total time), or all if null.
+     */
+    private Integer limit;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
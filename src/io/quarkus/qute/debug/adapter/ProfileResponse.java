@@ -0,0 +1,35 @@
+package io.quarkus.qute.debug.adapter;
+
+import io.quarkus.qute.debug.agent.profiler.ProfileEntry;
+
+/**
+ * Response of the custom 'quteProfile' DAP request.
+ */
+public class ProfileResponse {
+
+    /**
+     * True if the profiler is enabled.
+     */
+    private boolean enabled;
+
+    /**
+     * Latency statistics by template line and node kind, sorted by total time.
+     */
+    private ProfileEntry[] entries;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public ProfileEntry[] getEntries() {
+        return entries;
+    }
+
+    public void setEntries(ProfileEntry[] entries) {
+        this.entries = entries;
+    }
+}
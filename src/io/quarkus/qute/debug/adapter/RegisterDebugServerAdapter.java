@@ -3,16 +3,28 @@ package io.quarkus.qute.debug.adapter;
 import io.quarkus.qute.Engine;
 import io.quarkus.qute.EngineBuilder.EngineListener;
 import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import io.quarkus.qute.debug.agent.SessionFilter;
+import io.quarkus.qute.debug.agent.WeakIdentitySet;
+import io.quarkus.qute.debug.agent.capture.TraceCaptureListener;
+import io.quarkus.qute.debug.agent.capture.TraceFileWriter;
+import io.quarkus.qute.debug.agent.coverage.TemplateCoverage;
+import io.quarkus.qute.debug.agent.jfr.JfrTraceListener;
+import io.quarkus.qute.debug.agent.span.BatchSpanProcessor;
+import io.quarkus.qute.debug.agent.span.FileSpanExporter;
+import io.quarkus.qute.debug.agent.span.SpanTraceListener;
 import io.quarkus.qute.trace.TemplateEvent;
 import io.quarkus.qute.trace.TraceListenerAdapter;
 import org.eclipse.lsp4j.debug.launch.DSPLauncher;
 import org.eclipse.lsp4j.debug.services.IDebugProtocolClient;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -20,14 +32,38 @@ import java.util.concurrent.TimeUnit;
 
 public class RegisterDebugServerAdapter implements EngineListener {
 
+    private static final int DEFAULT_CAPTURE_FILE_SIZE = 64 * 1024 * 1024;
+
+    private static final int DEFAULT_CAPTURE_MAX_FILES = 16;
+
+    private static final int DEFAULT_SPAN_THRESHOLD_MICROS = 1000;
+
+    private static final int SPAN_QUEUE_SIZE = 2048;
+
+    private static final int SPAN_BATCH_SIZE = 512;
+
+    private static final long SPAN_EXPORT_DELAY_MILLIS = 1000;
+
     // Port to listen for debug connections, retrieved from environment
     private Integer port;
 
-    // Engines being tracked by the debug agent
-    private final Set<Engine> trackedEngines = new HashSet<>();
+    // Engines being tracked by the debug agent, weakly referenced so that the discarded engines can be garbage collected
+    private final WeakIdentitySet<Engine> trackedEngines = new WeakIdentitySet<>();
 
     // Engines that are debuggable but not yet initialized
-    private final Set<Engine> notInitializedEngines = new HashSet<>();
+    private final WeakIdentitySet<Engine> notInitializedEngines = new WeakIdentitySet<>();
+
+    // Template line coverage, written in the LCOV file given by the 'qute.debug.coverage' environment variable
+    private TemplateCoverage coverage;
+
+    // Binary trace of the renders, written in the directory given by the 'qute.debug.capture' environment variable
+    private TraceCaptureListener capture;
+
+    // Spans of the renders, written in the file given by the 'qute.debug.spans' environment variable
+    private SpanTraceListener spans;
+
+    // Name of the JMX MBean of the agent counters, null if it is not registered
+    private ObjectName metricsName;
 
     private volatile boolean initialized;
     private volatile DebuggeeAgent agent;
@@ -56,6 +92,18 @@ public class RegisterDebugServerAdapter implements EngineListener {
         // Track the debuggable engine
         trackedEngines.add(engine);
 
+        // Record the template line coverage, without debug agent
+        installCoverageIfNeeded(engine);
+
+        // Capture the trace of the renders, without debug agent
+        installCaptureIfNeeded(engine);
+
+        // Export the spans of the renders, without debug agent
+        installSpansIfNeeded(engine);
+
+        // Emit JFR events while a recording enables them, without debug agent
+        installJfrIfNeeded(engine);
+
         // If already initialized, immediately attach the engine
         if (initialized) {
             agent.track(engine);
@@ -82,12 +130,134 @@ public class RegisterDebugServerAdapter implements EngineListener {
         agent.track(engine);
     }
 
+    private synchronized void installCoverageIfNeeded(Engine engine) {
+        String coverageFile = System.getenv("qute.debug.coverage");
+        if (coverageFile == null || coverageFile.isBlank()) {
+            return;
+        }
+        if (coverage == null) {
+            coverage = new TemplateCoverage();
+            if (server != null) {
+                server.setCoverage(coverage);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    coverage.writeLcov(Paths.get(coverageFile));
+                    log("Template coverage written in " + coverageFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        engine.addTraceListener(coverage);
+    }
+
+    private synchronized void installCaptureIfNeeded(Engine engine) {
+        String captureDirectory = System.getenv("qute.debug.capture");
+        if (captureDirectory == null || captureDirectory.isBlank()) {
+            return;
+        }
+        if (capture == null) {
+            Integer fileSize = getIntEnv("qute.debug.captureFileSize");
+            Integer maxFiles = getIntEnv("qute.debug.captureMaxFiles");
+            try {
+                capture = new TraceCaptureListener(new TraceFileWriter(Paths.get(captureDirectory), "trace",
+                        fileSize != null ? fileSize : DEFAULT_CAPTURE_FILE_SIZE, maxFiles != null ? maxFiles : DEFAULT_CAPTURE_MAX_FILES));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    capture.close();
+                    log("Template trace written in " + captureDirectory);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
+        engine.addTraceListener(capture);
+    }
+
+    private static void installJfrIfNeeded(Engine engine) {
+        if (Boolean.parseBoolean(System.getenv("qute.debug.jfr"))) {
+            // The installation only references the engine weakly
+            JfrTraceListener.install(engine);
+        }
+    }
+
+    private synchronized void installSpansIfNeeded(Engine engine) {
+        String spansFile = System.getenv("qute.debug.spans");
+        if (spansFile == null || spansFile.isBlank()) {
+            return;
+        }
+        if (spans == null) {
+            Integer thresholdMicros = getIntEnv("qute.debug.spanThreshold");
+            BatchSpanProcessor processor;
+            try {
+                processor = new BatchSpanProcessor(new FileSpanExporter(Paths.get(spansFile)), SPAN_QUEUE_SIZE,
+                        SPAN_BATCH_SIZE, SPAN_EXPORT_DELAY_MILLIS);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            spans = new SpanTraceListener(processor, TimeUnit.MICROSECONDS.toNanos(
+                    thresholdMicros != null ? thresholdMicros : DEFAULT_SPAN_THRESHOLD_MICROS));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                processor.shutdown(SPAN_EXPORT_DELAY_MILLIS);
+                log("Template spans written in " + spansFile);
+            }));
+        }
+        engine.addTraceListener(spans);
+    }
+
+    /**
+     * Returns the template line coverage recorded when the 'qute.debug.coverage' environment variable is set.
+     *
+     * @return the template line coverage or null.
+     */
+    public TemplateCoverage getCoverage() {
+        return coverage;
+    }
+
     private DebuggeeAgent createAgentIfNeeded() {
         if (agent == null) {
             synchronized (this) {
                 if (agent == null) {
                     agent = new DebuggeeAgent();
+                    Integer maxSuspendedThreads = getIntEnv("qute.debug.maxSuspendedThreads");
+                    if (maxSuspendedThreads != null) {
+                        agent.setMaxSuspendedThreads(maxSuspendedThreads);
+                    }
+                    Integer suspendTimeout = getIntEnv("qute.debug.suspendTimeout");
+                    if (suspendTimeout != null) {
+                        agent.setSuspendTimeout(suspendTimeout);
+                    }
+                    Integer logpointRateLimit = getIntEnv("qute.debug.logpointRateLimit");
+                    if (logpointRateLimit != null) {
+                        agent.setLogpointRateLimit(logpointRateLimit);
+                    }
+                    agent.setNodeOutputEnabled(Boolean.parseBoolean(System.getenv("qute.debug.nodeOutput")));
+                    Integer maxDataBreakpoints = getIntEnv("qute.debug.maxDataBreakpoints");
+                    if (maxDataBreakpoints != null) {
+                        agent.setMaxDataBreakpoints(maxDataBreakpoints);
+                    }
+                    Integer historySize = getIntEnv("qute.debug.historySize");
+                    if (historySize != null) {
+                        agent.setHistorySize(historySize);
+                    }
+                    Integer maxSnapshots = getIntEnv("qute.debug.maxSnapshots");
+                    if (maxSnapshots != null) {
+                        agent.getSnapshotStore().setMaxSnapshots(maxSnapshots);
+                    }
+                    String sessionAttribute = System.getenv("qute.debug.sessionAttribute");
+                    String sessionDataKey = System.getenv("qute.debug.sessionDataKey");
+                    if (sessionAttribute != null || sessionDataKey != null) {
+                        agent.setSessionFilter(new SessionFilter(sessionAttribute, sessionDataKey));
+                    }
                     server = new DebugServerAdapter(agent);
+                    server.setCoverage(coverage);
+                    registerMetricsMBean(agent);
                     trackedEngines.forEach(agent::track);
                 }
             }
@@ -95,6 +265,44 @@ public class RegisterDebugServerAdapter implements EngineListener {
         return agent;
     }
 
+    /**
+     * Registers the counters of the agent as the JMX MBean 'io.quarkus.qute.debug:type=AgentMetrics,port=&lt;port&gt;'.
+     * The MBean registered by a previous agent for the same port (ex: after a restart of the application in dev mode)
+     * is replaced.
+     */
+    private synchronized void registerMetricsMBean(DebuggeeAgent agent) {
+        try {
+            ObjectName name = new ObjectName("io.quarkus.qute.debug:type=AgentMetrics,port=" + getPort());
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            mbeanServer.registerMBean(agent.getMetrics(), name);
+            metricsName = name;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Unregisters the JMX MBean of the agent counters when the debug server is shut down.
+     */
+    private synchronized void unregisterMetricsMBean() {
+        if (metricsName == null) {
+            return;
+        }
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mbeanServer.isRegistered(metricsName)) {
+                mbeanServer.unregisterMBean(metricsName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        } finally {
+            metricsName = null;
+        }
+    }
+
     private Integer getPort() {
         if (port != null) {
             return port;
@@ -105,12 +313,16 @@ public class RegisterDebugServerAdapter implements EngineListener {
 
     private static Integer doGetPort() {
         // Read the debug port from the environment variable
-        String portStr = System.getenv("qute.debug.port");
-        if (portStr == null || portStr.isBlank()) {
+        return getIntEnv("qute.debug.port");
+    }
+
+    private static Integer getIntEnv(String name) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
             return null;
         }
         try {
-            return Integer.parseInt(portStr);
+            return Integer.parseInt(value);
         } catch (Exception e) {
             return null;
         }
@@ -193,6 +405,7 @@ public class RegisterDebugServerAdapter implements EngineListener {
                 if (launcherFuture != null) {
                     launcherFuture.cancel(true);
                 }
+                unregisterMetricsMBean();
                 log("Shutdown hook: closing server socket.");
                 try {
                     if (serverSocket != null && !serverSocket.isClosed()) {
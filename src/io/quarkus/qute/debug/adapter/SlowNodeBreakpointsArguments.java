@@ -0,0 +1,18 @@
+package io.quarkus.qute.debug.adapter;
+
+/**
+ * Arguments of the custom 'quteSetSlowNodeBreakpoints' DAP request. The given breakpoints
+ * replace all the slow node breakpoints.
+ */
+public class SlowNodeBreakpointsArguments {
+
+    private SlowNodeSourceBreakpoint[] breakpoints;
+
+    public SlowNodeSourceBreakpoint[] getBreakpoints() {
+        return breakpoints;
+    }
+
+    public void setBreakpoints(SlowNodeSourceBreakpoint[] breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+}
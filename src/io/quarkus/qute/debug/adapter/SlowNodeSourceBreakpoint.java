@@ -0,0 +1,61 @@
+package io.quarkus.qute.debug.adapter;
+
+import org.eclipse.lsp4j.debug.Source;
+
+/**
+ * Slow node breakpoint of the custom 'quteSetSlowNodeBreakpoints' DAP request.
+ */
+public class SlowNodeSourceBreakpoint {
+
+    /**
+     * The template source, or null for all templates.
+     */
+    private Source source;
+
+    /**
+     * The template line, or null for all lines.
+     */
+    private Integer line;
+
+    /**
+     * The resolution time in milliseconds above which the breakpoint is hit.
+     */
+    private double thresholdMillis;
+
+    /**
+     * Suspends the thread if true, otherwise only sends an output event.
+     */
+    private Boolean suspend;
+
+    public Source getSource() {
+        return source;
+    }
+
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    public Integer getLine() {
+        return line;
+    }
+
+    public void setLine(Integer line) {
+        this.line = line;
+    }
+
+    public double getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    public void setThresholdMillis(double thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    public Boolean getSuspend() {
+        return suspend;
+    }
+
+    public void setSuspend(Boolean suspend) {
+        this.suspend = suspend;
+    }
+}
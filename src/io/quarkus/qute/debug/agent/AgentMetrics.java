@@ -0,0 +1,124 @@
+package io.quarkus.qute.debug.agent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work done by the {@link DebuggeeAgent} itself, used to measure the
+ * overhead of the debugger on the rendering threads:
+ * <ul>
+ * <li>the trace events processed and the stack frames created,</li>
+ * <li>the breakpoint lookups, the breakpoint hits and the condition evaluations with their time,</li>
+ * <li>the suspensions and the time spent suspended,</li>
+ * <li>the events dispatched to the debugger listeners and the time spent in the listeners.</li>
+ * </ul>
+ * The counters are striped ({@link LongAdder}) so that the rendering threads don't contend on them.
+ * They are exposed with the custom 'quteMetrics' DAP request and as a JMX MBean.
+ */
+public class AgentMetrics implements AgentMetricsMBean {
+
+    private final LongAdder eventsProcessed = new LongAdder();
+    private final LongAdder framesCreated = new LongAdder();
+    private final LongAdder breakpointLookups = new LongAdder();
+    private final LongAdder breakpointHits = new LongAdder();
+    private final LongAdder conditionEvaluations = new LongAdder();
+    private final LongAdder conditionEvaluationNanos = new LongAdder();
+    private final LongAdder suspensions = new LongAdder();
+    private final LongAdder suspendedNanos = new LongAdder();
+    private final LongAdder listenerDispatches = new LongAdder();
+    private final LongAdder listenerDispatchNanos = new LongAdder();
+
+    void onEvent() {
+        eventsProcessed.increment();
+    }
+
+    void onFrameCreated() {
+        framesCreated.increment();
+    }
+
+    void onBreakpointLookup() {
+        breakpointLookups.increment();
+    }
+
+    void onBreakpointHit() {
+        breakpointHits.increment();
+    }
+
+    void onConditionEvaluated(long nanos) {
+        conditionEvaluations.increment();
+        conditionEvaluationNanos.add(nanos);
+    }
+
+    void onSuspended(long nanos) {
+        suspensions.increment();
+        suspendedNanos.add(nanos);
+    }
+
+    void onListenersDispatched(long nanos) {
+        listenerDispatches.increment();
+        listenerDispatchNanos.add(nanos);
+    }
+
+    @Override
+    public long getEventsProcessed() {
+        return eventsProcessed.sum();
+    }
+
+    @Override
+    public long getFramesCreated() {
+        return framesCreated.sum();
+    }
+
+    @Override
+    public long getBreakpointLookups() {
+        return breakpointLookups.sum();
+    }
+
+    @Override
+    public long getBreakpointHits() {
+        return breakpointHits.sum();
+    }
+
+    @Override
+    public long getConditionEvaluations() {
+        return conditionEvaluations.sum();
+    }
+
+    @Override
+    public long getConditionEvaluationNanos() {
+        return conditionEvaluationNanos.sum();
+    }
+
+    @Override
+    public long getSuspensions() {
+        return suspensions.sum();
+    }
+
+    @Override
+    public long getSuspendedNanos() {
+        return suspendedNanos.sum();
+    }
+
+    @Override
+    public long getListenerDispatches() {
+        return listenerDispatches.sum();
+    }
+
+    @Override
+    public long getListenerDispatchNanos() {
+        return listenerDispatchNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        eventsProcessed.reset();
+        framesCreated.reset();
+        breakpointLookups.reset();
+        breakpointHits.reset();
+        conditionEvaluations.reset();
+        conditionEvaluationNanos.reset();
+        suspensions.reset();
+        suspendedNanos.reset();
+        listenerDispatches.reset();
+        listenerDispatchNanos.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package io.quarkus.qute.debug.agent;
+
+/**
+ * JMX interface of the {@link AgentMetrics}.
+ */
+public interface AgentMetricsMBean {
+
+    long getEventsProcessed();
+
+    long getFramesCreated();
+
+    long getBreakpointLookups();
+
+    long getBreakpointHits();
+
+    long getConditionEvaluations();
+
+    long getConditionEvaluationNanos();
+
+    long getSuspensions();
+
+    long getSuspendedNanos();
+
+    long getListenerDispatches();
+
+    long getListenerDispatchNanos();
+
+    void reset();
+}
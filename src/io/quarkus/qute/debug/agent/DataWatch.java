@@ -0,0 +1,100 @@
+package io.quarkus.qute.debug.agent;
+
+import io.quarkus.qute.ResolutionContext;
+import io.quarkus.qute.Results;
+import io.quarkus.qute.debug.RemoteDataBreakpoint;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of a data breakpoint for a render thread.
+ * <p>
+ * The expression is evaluated only when the resolution context or its data object
+ * changes, which is when a section ({@code #for}, {@code #let}...) introduces or
+ * leaves variables. A change is detected by comparing the identity and the hash
+ * of the new value with the previous value.
+ * <p>
+ * A watch lives for one render: the first value of the expression is not a change,
+ * and a value is only compared to the last value seen in the same render, even if
+ * the expression has been out of scope in between.
+ */
+class DataWatch {
+
+    private static final Object UNDEFINED = new Object();
+
+    private final RemoteDataBreakpoint breakpoint;
+
+    private ResolutionContext lastContext;
+    private Object lastData;
+    private Object lastValue;
+    private int lastHash;
+
+    DataWatch(RemoteDataBreakpoint breakpoint) {
+        this.breakpoint = breakpoint;
+        this.lastValue = UNDEFINED;
+    }
+
+    RemoteDataBreakpoint getBreakpoint() {
+        return breakpoint;
+    }
+
+    /**
+     * Re-evaluates the expression if the context has changed since the last check.
+     *
+     * @param frame the current stack frame.
+     * @return true if the expression has a new value.
+     */
+    boolean hasChanged(RemoteStackFrame frame) {
+        ResolutionContext context = frame.getEvent().getContext();
+        Object data = context.getData();
+        if (context == lastContext && data == lastData) {
+            return false;
+        }
+        lastContext = context;
+        lastData = data;
+        Object value = evaluate(frame);
+        if (value == UNDEFINED) {
+            // The variable is out of scope, it's not a change and the last value is kept
+            return false;
+        }
+        int hash = hash(value);
+        if (value == lastValue && hash == lastHash) {
+            return false;
+        }
+        // The first value seen in the render is not a change
+        boolean changed = lastValue != UNDEFINED && (hash != lastHash || !equals(value, lastValue));
+        lastValue = value;
+        lastHash = hash;
+        return changed;
+    }
+
+    private Object evaluate(RemoteStackFrame frame) {
+        try {
+            CompletableFuture<Object> future = frame.evaluate(breakpoint.getExpression()).toCompletableFuture();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                // Asynchronous or not resolvable in the current context
+                return UNDEFINED;
+            }
+            Object value = future.getNow(UNDEFINED);
+            return Results.isNotFound(value) ? UNDEFINED : value;
+        } catch (Exception e) {
+            return UNDEFINED;
+        }
+    }
+
+    private static int hash(Object value) {
+        try {
+            return value != null ? value.hashCode() : 0;
+        } catch (RuntimeException e) {
+            return System.identityHashCode(value);
+        }
+    }
+
+    private static boolean equals(Object value, Object previous) {
+        try {
+            return value != null ? value.equals(previous) : previous == null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
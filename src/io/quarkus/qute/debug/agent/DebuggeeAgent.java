@@ -2,10 +2,21 @@ package io.quarkus.qute.debug.agent;
 
 import io.quarkus.qute.Engine;
 import io.quarkus.qute.debug.*;
+import io.quarkus.qute.debug.agent.condition.ExceptionFilter;
+import io.quarkus.qute.debug.agent.logpoint.LogMessage;
+import io.quarkus.qute.debug.agent.logpoint.LogpointOutput;
+import io.quarkus.qute.debug.agent.profiler.FlameGraphCollector;
+import io.quarkus.qute.debug.agent.profiler.TemplateProfiler;
+import io.quarkus.qute.debug.agent.scopes.RemoteScope;
+import io.quarkus.qute.debug.agent.snapshot.ExecutionHistory;
+import io.quarkus.qute.debug.agent.snapshot.FrameSnapshot;
+import io.quarkus.qute.debug.agent.snapshot.SnapshotStore;
+import io.quarkus.qute.debug.agent.stream.TraceStream;
 import io.quarkus.qute.debug.agent.variables.VariablesHelper;
 import io.quarkus.qute.debug.agent.variables.VariablesRegistry;
 import io.quarkus.qute.trace.ResolveEvent;
 import io.quarkus.qute.trace.TemplateEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import org.eclipse.lsp4j.debug.*;
 import org.eclipse.lsp4j.debug.Thread;
 import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
@@ -14,13 +25,44 @@ import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DebuggeeAgent implements Debugger {
 
+    private static final int DEFAULT_LOGPOINT_RATE_LIMIT = 100;
+
+    private static final int DEFAULT_MAX_DATA_BREAKPOINTS = 8;
+
+    private static final RemoteDataBreakpoint[] EMPTY_DATA_BREAKPOINTS = new RemoteDataBreakpoint[0];
+
+    // Bounds of the variables copied by a snapshot breakpoint
+    private static final int SNAPSHOT_MAX_DEPTH = 3;
+    private static final int SNAPSHOT_MAX_VARIABLES = 500;
+
+    // Minimum interval between two reports of the skipped hits of the breakpoints during a render
+    private static final long SKIPPED_HITS_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Number of local variables recorded by node in the execution history
+    static final int HISTORY_MAX_VARIABLES = 16;
+
     private final DebuggerTraceListener debugListener;
 
+    // The breakpoints of a template are replaced by an immutable map, they are read by the render threads
     private final Map<String /* template id */, Map<Integer, RemoteBreakpoint>> breakpoints;
 
+    private volatile SlowNodeBreakpoint[] slowNodeBreakpoints;
+
+    private volatile RemoteDataBreakpoint[] dataBreakpoints;
+
+    private volatile int maxDataBreakpoints;
+
+    // Null when no exception breakpoint is enabled
+    private volatile ExceptionFilter exceptionFilter;
+
     private final Map<Long, RemoteThread> debuggees;
 
     private final Collection<DebuggerListener> listeners;
@@ -28,26 +70,199 @@ public class DebuggeeAgent implements Debugger {
     private final VariablesRegistry variablesRegistry;
 
     private final SourceTemplateRegistry sourceTemplateRegistry;
-    private final Set<Engine> trackedEngine;
-    private boolean enabled;
+
+    // Engines to debug (weakly referenced)
+    private final WeakIdentitySet<Engine> trackedEngine;
+
+    // Tracked engines where the trace listener is currently registered
+    private final WeakIdentitySet<Engine> attachedEngines;
+
+    // Tracked engines which have a template with breakpoints, computed when the breakpoints are set
+    private final WeakIdentitySet<Engine> breakpointEngines;
+
+    private volatile boolean enabled;
+
+    // Lock used to suspend / resume the debuggee threads
+    private final Object suspendLock;
+
+    // Odd while all threads must be paused, changed by each continue all to wake up the suspended threads
+    private volatile long suspendEpoch;
+
+    // Suspension budget
+    private volatile int maxSuspendedThreads;
+    private volatile long suspendTimeout;
+    private final AtomicInteger suspendedThreads;
+    private final LongAdder skippedHits;
+    private final AtomicLong unreportedSkippedHits;
+
+    // Breakpoints whose skipped hits have changed since they have been reported to the client
+    private final Set<RemoteBreakpoint> unreportedBreakpoints;
+
+    private volatile long lastBreakpointsReport;
+
+    private final AtomicInteger breakpointIds;
+
+    private volatile SessionFilter sessionFilter;
+
+    private final TemplateProfiler profiler;
+
+    private final FlameGraphCollector flameGraph;
+
+    private final TraceStream traceStream;
+
+    private final LogpointOutput logpointOutput;
+
+    private volatile int logpointRateLimit;
+
+    // Sends each resolved node to the client console (debugging of the debugger)
+    private volatile boolean nodeOutputEnabled;
+
+    private final SnapshotStore snapshotStore;
+
+    private final AgentMetrics metrics;
+
+    // Number of nodes recorded by render for the step back, 0 if disabled
+    private volatile int historySize;
+
+    // Execution histories of the platform render threads, reused by their renders
+    private final ThreadLocal<ExecutionHistory> histories = new ThreadLocal<>();
 
     public DebuggeeAgent() {
         this.debugListener = new DebuggerTraceListener(this);
-        this.breakpoints = new HashMap<>();
-        this.debuggees = new HashMap<>();
+        this.breakpoints = new ConcurrentHashMap<>();
+        this.slowNodeBreakpoints = SlowNodeBreakpoint.EMPTY_SLOW_NODE_BREAKPOINTS;
+        this.dataBreakpoints = EMPTY_DATA_BREAKPOINTS;
+        this.maxDataBreakpoints = DEFAULT_MAX_DATA_BREAKPOINTS;
+        this.debuggees = new ConcurrentHashMap<>();
         this.listeners = new ArrayList<>();
         this.variablesRegistry = new VariablesRegistry();
         this.sourceTemplateRegistry = new SourceTemplateRegistry();
-        this.trackedEngine = new HashSet<>();
+        this.trackedEngine = new WeakIdentitySet<>();
+        this.attachedEngines = new WeakIdentitySet<>();
+        this.breakpointEngines = new WeakIdentitySet<>();
+        this.suspendLock = new Object();
+        this.maxSuspendedThreads = Integer.MAX_VALUE;
+        this.suspendedThreads = new AtomicInteger();
+        this.skippedHits = new LongAdder();
+        this.unreportedSkippedHits = new AtomicLong();
+        this.unreportedBreakpoints = ConcurrentHashMap.newKeySet();
+        this.breakpointIds = new AtomicInteger();
+        this.profiler = new TemplateProfiler();
+        this.flameGraph = new FlameGraphCollector();
+        this.traceStream = new TraceStream(this::updateTraceListeners, Infrastructure.getDefaultExecutor());
+        this.logpointOutput = new LogpointOutput(this::output);
+        this.logpointRateLimit = DEFAULT_LOGPOINT_RATE_LIMIT;
+        this.snapshotStore = new SnapshotStore();
+        this.metrics = new AgentMetrics();
+    }
+
+    public synchronized void track(Engine engine) {
+        if (trackedEngine.add(engine)) {
+            if (hasBreakpoints(engine)) {
+                breakpointEngines.add(engine);
+            }
+            updateTraceListener(engine);
+        }
+    }
+
+    /**
+     * Returns the number of tracked engines which have not been garbage collected.
+     *
+     * @return the number of tracked engines.
+     */
+    public int getTrackedEngineCount() {
+        return trackedEngine.size();
+    }
+
+    /**
+     * Registers or unregisters the trace listener of each tracked engine according
+     * to whether something is armed for it.
+     */
+    synchronized void updateTraceListeners() {
+        for (Engine engine : trackedEngine) {
+            updateTraceListener(engine);
+        }
+    }
+
+    /**
+     * Registers the trace listener on the given engine when a breakpoint (source, slow node, exception or data), a pause or
+     * a step is armed for it, when the profiler / flame graph collector is enabled or when the trace stream has subscribers, otherwise unregisters it so that the engine renders
+     * its templates without paying for trace events.
+     *
+     * @param engine the tracked engine.
+     */
+    private synchronized void updateTraceListener(Engine engine) {
+        if (profiler.isEnabled() || flameGraph.isEnabled() || traceStream.hasSubscribers() || (isEnabled() && isArmed(engine))) {
+            if (attachedEngines.add(engine)) {
+                engine.addTraceListener(debugListener);
+            }
+        } else if (attachedEngines.remove(engine)) {
+            engine.removeTraceListener(debugListener);
+            // The end template event will never be received for the renders in progress.
+            for (RemoteThread debuggee : debuggees.values()) {
+                if (debuggee.getEngine() == engine && debuggees.remove(debuggee.getThreadId(), debuggee)) {
+                    debuggee.exit();
+                }
+            }
+        }
+    }
+
+    private boolean isArmed(Engine engine) {
+        if (isPauseEpoch(suspendEpoch) || exceptionFilter != null || dataBreakpoints.length > 0) {
+            return true;
+        }
+        for (RemoteThread debuggee : debuggees.values()) {
+            if (debuggee.getEngine() == engine && debuggee.hasPendingStop()) {
+                return true;
+            }
+        }
+        return breakpointEngines.contains(engine);
     }
 
-    public void track(Engine engine) {
-        if (!trackedEngine.contains(engine)) {
-            engine.addTraceListener(debugListener);
-            trackedEngine.add(engine);
+    /**
+     * Recomputes the tracked engines which have a template with breakpoints. Locating a
+     * template may load it, this is done when the breakpoints are set and not when the
+     * trace listeners are updated by the render threads.
+     */
+    private synchronized void updateBreakpointEngines() {
+        breakpointEngines.clear();
+        for (Engine engine : trackedEngine) {
+            if (hasBreakpoints(engine)) {
+                breakpointEngines.add(engine);
+            }
         }
     }
 
+    private boolean hasBreakpoints(Engine engine) {
+        for (String templateId : breakpoints.keySet()) {
+            if (isTemplateOf(templateId, engine)) {
+                return true;
+            }
+        }
+        for (SlowNodeBreakpoint breakpoint : slowNodeBreakpoints) {
+            if (breakpoint.getTemplateId() == null || isTemplateOf(breakpoint.getTemplateId(), engine)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTemplateOf(String templateId, Engine engine) {
+        if (templateId == null) {
+            return false;
+        }
+        if (engine.isTemplateLoaded(templateId)) {
+            return true;
+        }
+        for (var fileExtension : sourceTemplateRegistry.getFileExtensions()) {
+            if (templateId.endsWith(fileExtension)
+                    && engine.isTemplateLoaded(templateId.substring(0, templateId.length() - fileExtension.length()))) {
+                return true;
+            }
+        }
+        return engine.locate(templateId).isPresent();
+    }
+
     @Override
     public DebuggerState getState(long threadId) {
         RemoteThread thread = getRemoteThread(threadId);
@@ -59,59 +274,475 @@ public class DebuggeeAgent implements Debugger {
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.pause();
+            updateTraceListeners();
+        }
+    }
+
+    @Override
+    public void pauseAll() {
+        synchronized (suspendLock) {
+            if (!isPauseEpoch(suspendEpoch)) {
+                suspendEpoch++;
+            }
         }
+        updateTraceListeners();
     }
 
     @Override
     public void resume(long threadId) {
+        if (threadId == SnapshotStore.THREAD_ID) {
+            // Continuing the snapshots thread discards the snapshots
+            snapshotStore.clear();
+            fireThreadEvent(new ThreadEvent(threadId, ThreadEvent.ThreadStatus.EXITED));
+            return;
+        }
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.resume();
+            updateTraceListeners();
+        }
+    }
+
+    @Override
+    public void resumeAll() {
+        synchronized (suspendLock) {
+            // Wake up all suspended threads with one signal
+            suspendEpoch += isPauseEpoch(suspendEpoch) ? 1 : 2;
+            for (RemoteThread thread : debuggees.values()) {
+                thread.markResumed();
+            }
+            suspendLock.notifyAll();
+        }
+        updateTraceListeners();
+    }
+
+    Object getSuspendLock() {
+        return suspendLock;
+    }
+
+    long getSuspendEpoch() {
+        return suspendEpoch;
+    }
+
+    static boolean isPauseEpoch(long suspendEpoch) {
+        return (suspendEpoch & 1) != 0;
+    }
+
+    /**
+     * Reserves a place in the suspension budget before suspending a thread.
+     *
+     * @param force true if the thread must be suspended even if the budget is exhausted.
+     * @return true if the thread can be suspended and false if the hit must be skipped.
+     */
+    boolean acquireSuspension(boolean force) {
+        if (force) {
+            suspendedThreads.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = suspendedThreads.get();
+            if (current >= maxSuspendedThreads) {
+                skippedHits.increment();
+                unreportedSkippedHits.incrementAndGet();
+                return false;
+            }
+        } while (!suspendedThreads.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Releases the place reserved with {@link #acquireSuspension(boolean)} once the thread is resumed
+     * and reports the hits which have been skipped in the meantime.
+     */
+    void releaseSuspension() {
+        suspendedThreads.decrementAndGet();
+        long skipped = unreportedSkippedHits.getAndSet(0);
+        if (skipped > 0) {
+            output(skipped + " hit(s) skipped because " + maxSuspendedThreads + " thread(s) were already suspended.");
+        }
+    }
+
+    /**
+     * Counts a hit of the given breakpoint which has not stopped the thread (hit condition, suspension
+     * budget). The number of skipped hits is sent to the client in a changed breakpoint event at the end
+     * of the render, or at most every second while the render is in progress.
+     *
+     * @param breakpoint the breakpoint.
+     */
+    void onSkippedHit(RemoteBreakpoint breakpoint) {
+        breakpoint.onSkippedHit();
+        unreportedBreakpoints.add(breakpoint);
+        long now = System.nanoTime();
+        if (now - lastBreakpointsReport >= SKIPPED_HITS_REPORT_INTERVAL_NANOS) {
+            lastBreakpointsReport = now;
+            reportBreakpoints();
+        }
+    }
+
+    private void reportBreakpoints() {
+        for (RemoteBreakpoint breakpoint : unreportedBreakpoints) {
+            if (unreportedBreakpoints.remove(breakpoint)) {
+                breakpoint.updateSkippedHitsMessage();
+                fireBreakpointChanged(breakpoint);
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of threads which can be suspended at the same time. The threads which
+     * reach a breakpoint or a pause beyond this limit continue without stopping.
+     *
+     * @param maxSuspendedThreads the maximum number of suspended threads.
+     */
+    public void setMaxSuspendedThreads(int maxSuspendedThreads) {
+        this.maxSuspendedThreads = maxSuspendedThreads > 0 ? maxSuspendedThreads : Integer.MAX_VALUE;
+    }
+
+    public int getMaxSuspendedThreads() {
+        return maxSuspendedThreads;
+    }
+
+    /**
+     * Sets the time after which a suspended thread is resumed automatically.
+     *
+     * @param suspendTimeout the timeout in milliseconds, 0 to wait until the client resumes the thread.
+     */
+    public void setSuspendTimeout(long suspendTimeout) {
+        this.suspendTimeout = Math.max(0, suspendTimeout);
+    }
+
+    public long getSuspendTimeout() {
+        return suspendTimeout;
+    }
+
+    /**
+     * Returns the counters of the work done by the agent.
+     *
+     * @return the counters of the work done by the agent.
+     */
+    public AgentMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TemplateProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Enables / disables the profiler at runtime. The trace listener stays registered on
+     * the tracked engines while the profiler is enabled.
+     *
+     * @param enabled true to enable the profiler.
+     */
+    public void setProfilerEnabled(boolean enabled) {
+        profiler.setEnabled(enabled);
+        updateTraceListeners();
+    }
+
+    /**
+     * Returns the stream of the trace records of the tracked engines. The trace listener
+     * stays registered on the tracked engines while the stream has subscribers.
+     *
+     * @return the stream of the trace records of the tracked engines.
+     */
+    public TraceStream getTraceStream() {
+        return traceStream;
+    }
+
+    public FlameGraphCollector getFlameGraph() {
+        return flameGraph;
+    }
+
+    /**
+     * Enables / disables the flame graph collector at runtime. The trace listener stays
+     * registered on the tracked engines while the collector is enabled.
+     *
+     * @param enabled true to enable the flame graph collector.
+     */
+    public void setFlameGraphEnabled(boolean enabled) {
+        flameGraph.setEnabled(enabled);
+        updateTraceListeners();
+    }
+
+    /**
+     * Sets the maximum number of messages logged per second by each logpoint, the messages
+     * beyond this limit are dropped. It applies to the logpoints set after the call.
+     *
+     * @param logpointRateLimit the maximum number of messages per second, 0 for no limit.
+     */
+    public void setLogpointRateLimit(int logpointRateLimit) {
+        this.logpointRateLimit = Math.max(0, logpointRateLimit);
+    }
+
+    /**
+     * Enables / disables the output of each resolved node to the client console. It is
+     * disabled by default: it allocates and sends a message per node.
+     *
+     * @param nodeOutputEnabled true to send each resolved node to the client console.
+     */
+    public void setNodeOutputEnabled(boolean nodeOutputEnabled) {
+        this.nodeOutputEnabled = nodeOutputEnabled;
+    }
+
+    public int getLogpointRateLimit() {
+        return logpointRateLimit;
+    }
+
+    /**
+     * Captures the expression values of the message of the given logpoint on the render thread
+     * and queues the message to format and send it on the logpoint output thread.
+     *
+     * @param breakpoint the logpoint.
+     * @param frame the stack frame which has hit the logpoint.
+     */
+    void log(RemoteBreakpoint breakpoint, RemoteStackFrame frame) {
+        if (!breakpoint.tryLog()) {
+            logpointOutput.drop();
+            return;
+        }
+        LogMessage logMessage = breakpoint.getLogMessage();
+        logpointOutput.log(logMessage, logMessage.capture(frame));
+    }
+
+    /**
+     * Sets the number of template nodes recorded by render in the execution history of each
+     * render thread, used to step back when a thread is suspended. It applies to the renders
+     * started after the call.
+     *
+     * @param historySize the number of recorded nodes, 0 to disable the step back.
+     */
+    public void setHistorySize(int historySize) {
+        this.historySize = Math.max(0, historySize);
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Returns the execution history of a render started on the current thread, or null if the step back is disabled.
+     * <p>
+     * The history of a platform thread is reused by its next renders. A virtual thread usually renders once,
+     * so its history is allocated by render.
+     *
+     * @return the cleared execution history of the current thread, or null if the step back is disabled.
+     */
+    ExecutionHistory getExecutionHistory() {
+        int historySize = this.historySize;
+        if (historySize == 0) {
+            return null;
+        }
+        if (java.lang.Thread.currentThread().isVirtual()) {
+            return new ExecutionHistory(historySize, HISTORY_MAX_VARIABLES);
+        }
+        ExecutionHistory history = histories.get();
+        if (history == null || history.getCapacity() != historySize) {
+            history = new ExecutionHistory(historySize, HISTORY_MAX_VARIABLES);
+            histories.set(history);
+        } else {
+            history.clear();
         }
+        return history;
+    }
+
+    static int getSnapshotMaxDepth() {
+        return SNAPSHOT_MAX_DEPTH;
+    }
+
+    static int getSnapshotMaxVariables() {
+        return SNAPSHOT_MAX_VARIABLES;
+    }
+
+    public SnapshotStore getSnapshotStore() {
+        return snapshotStore;
+    }
+
+    /**
+     * Copies the variables of the given stack frame in the snapshot store on the render thread, which
+     * continues right after. The first snapshot suspends the synthetic snapshots thread.
+     *
+     * @param thread the render thread.
+     * @param frame the stack frame which has hit the snapshot breakpoint.
+     */
+    void takeSnapshot(RemoteThread thread, RemoteStackFrame frame) {
+        FrameSnapshot snapshot = FrameSnapshot.capture(frame, thread.getName(), SNAPSHOT_MAX_DEPTH, SNAPSHOT_MAX_VARIABLES);
+        if (snapshotStore.add(snapshot)) {
+            fireThreadEvent(new ThreadEvent(SnapshotStore.THREAD_ID, ThreadEvent.ThreadStatus.STARTED));
+            fireStoppedEvent(new StoppedEvent(SnapshotStore.THREAD_ID, StoppedEvent.StoppedReason.BREAKPOINT));
+        }
+    }
+
+    /**
+     * Sets the filter used to debug only the renders which carry a debug marker.
+     *
+     * @param sessionFilter the session filter, or null to debug all renders.
+     */
+    public void setSessionFilter(SessionFilter sessionFilter) {
+        this.sessionFilter = sessionFilter;
+    }
+
+    public SessionFilter getSessionFilter() {
+        return sessionFilter;
+    }
+
+    public int getSuspendedThreadCount() {
+        return suspendedThreads.get();
+    }
+
+    /**
+     * Returns the number of breakpoint / pause hits which have been skipped because of the suspension budget.
+     *
+     * @return the number of skipped hits.
+     */
+    public long getSkippedHits() {
+        return skippedHits.sum();
     }
 
     public void onStartTemplate(TemplateEvent event) {
+        metrics.onEvent();
+        if (profiler.isEnabled()) {
+            profiler.onStartTemplate(event);
+        }
+        if (flameGraph.isEnabled()) {
+            flameGraph.onStartTemplate(event);
+        }
+        traceStream.onStartTemplate(event);
         if (!isEnabled()) {
             return;
         }
-        RemoteThread debuggee = getOrCreateDebuggeeThread();
-        debuggee.start();
+        RemoteThread debuggee = getRemoteThread(java.lang.Thread.currentThread().threadId());
+        if (debuggee != null && !debuggee.isStarted()) {
+            // The trace listener has been registered while the previous render of this thread was in progress:
+            // its end template event has never been received.
+            debuggees.remove(debuggee.getThreadId(), debuggee);
+            debuggee.exit();
+        }
+        debuggee = getOrCreateDebuggeeThread(event.getEngine());
+        SessionFilter sessionFilter = this.sessionFilter;
+        debuggee.start(event, sessionFilter == null ? Boolean.TRUE : sessionFilter.matches(event.getTemplateInstance()));
     }
 
     public void onTemplateNode(ResolveEvent event) {
+        metrics.onEvent();
+        if (profiler.isEnabled()) {
+            profiler.onBeforeResolve(event);
+        }
+        if (flameGraph.isEnabled()) {
+            flameGraph.onBeforeResolve(event);
+        }
+        traceStream.onBeforeResolve(event);
         if (!isEnabled()) {
             return;
         }
 
-        OutputEventArguments args = new OutputEventArguments();
-        args.setOutput(event.getTemplateNode().toString());
-        args.setCategory(OutputEventArgumentsCategory.CONSOLE);
-        output(args);
+        RemoteThread debuggee = getOrCreateDebuggeeThread(event.getEngine());
+        if (!debuggee.isSessionMatched(event, sessionFilter)) {
+            // The render doesn't carry the debug marker
+            return;
+        }
+
+        if (nodeOutputEnabled) {
+            OutputEventArguments args = new OutputEventArguments();
+            args.setOutput(event.getTemplateNode().toString());
+            args.setCategory(OutputEventArgumentsCategory.CONSOLE);
+            output(args);
+        }
 
-        RemoteThread debuggee = getOrCreateDebuggeeThread();
         debuggee.onTemplateNode(event);
     }
 
+    public void onAfterTemplateNode(ResolveEvent event) {
+        metrics.onEvent();
+        if (profiler.isEnabled()) {
+            profiler.onAfterResolve(event);
+        }
+        if (flameGraph.isEnabled()) {
+            flameGraph.onAfterResolve(event);
+        }
+        traceStream.onAfterResolve(event);
+        if (!isEnabled()) {
+            return;
+        }
+        ExceptionFilter exceptionFilter = this.exceptionFilter;
+        if (exceptionFilter != null && event.getError() == null) {
+            exceptionFilter = null;
+        }
+        if (exceptionFilter == null && !hasSlowNodeBreakpoints()) {
+            return;
+        }
+        RemoteThread debuggee = getRemoteThread(java.lang.Thread.currentThread().threadId());
+        if (debuggee != null && debuggee.isSessionMatched()) {
+            debuggee.onAfterTemplateNode(event, exceptionFilter);
+        }
+    }
+
     public void onEndTemplate(TemplateEvent event) {
+        metrics.onEvent();
+        if (profiler.isEnabled()) {
+            profiler.onEndTemplate(event);
+        }
+        if (flameGraph.isEnabled()) {
+            flameGraph.onEndTemplate(event);
+        }
+        traceStream.onEndTemplate(event);
         if (!isEnabled()) {
             return;
         }
-        RemoteThread debuggee = getOrCreateDebuggeeThread();
-        debuggees.remove(debuggee.getId());
+        if (!unreportedBreakpoints.isEmpty()) {
+            reportBreakpoints();
+        }
+        RemoteThread debuggee = getRemoteThread(java.lang.Thread.currentThread().threadId());
+        if (debuggee == null || !debuggee.isRendering(event)) {
+            // The render has been started by another thread (asynchronous resolution)
+            debuggee = getRenderingDebuggee(event);
+            if (debuggee == null) {
+                // The render has been started before the trace listener was registered
+                return;
+            }
+        }
+        debuggees.remove(debuggee.getThreadId(), debuggee);
         debuggee.exit();
+        if (debuggee.hasPendingStop()) {
+            // The step or pause requested for this render can no longer happen.
+            updateTraceListeners();
+        }
+    }
+
+    private RemoteThread getRenderingDebuggee(TemplateEvent event) {
+        for (RemoteThread debuggee : debuggees.values()) {
+            if (debuggee.isRendering(event)) {
+                return debuggee;
+            }
+        }
+        return null;
     }
 
-    private RemoteThread getOrCreateDebuggeeThread() {
+    private RemoteThread getOrCreateDebuggeeThread(Engine engine) {
         java.lang.Thread thread = java.lang.Thread.currentThread();
         long threadId = thread.threadId();
         RemoteThread debuggee = getRemoteThread(threadId);
         if (debuggee == null) {
+            expungeDeadDebuggees();
             debuggee = new RemoteThread(thread, this);
             debuggees.put(threadId, debuggee);
         }
+        debuggee.setEngine(engine);
         return debuggee;
     }
 
+    /**
+     * Removes the debuggee threads which have died without sending the end template event
+     * of their render (the trace listener has been registered while the render was in progress).
+     */
+    private void expungeDeadDebuggees() {
+        for (RemoteThread debuggee : debuggees.values()) {
+            if (!debuggee.isThreadAlive() && debuggees.remove(debuggee.getThreadId(), debuggee)) {
+                debuggee.exit();
+            }
+        }
+    }
+
     private RemoteThread getRemoteThread(long threadId) {
         return debuggees.get(threadId);
     }
@@ -120,36 +751,186 @@ public class DebuggeeAgent implements Debugger {
     public Breakpoint[] setBreakpoints(SourceBreakpoint[] sourceBreakpoints, Source source) {
         sourceTemplateRegistry.registerSource(source);
         String templateId = sourceTemplateRegistry.getTemplateId(source);
-        Map<Integer, RemoteBreakpoint> templateBreakpoints = this.breakpoints.computeIfAbsent(templateId, k -> new HashMap<>());
-        templateBreakpoints.clear();
+        Map<Integer, RemoteBreakpoint> templateBreakpoints = new HashMap<>();
 
         Breakpoint[] result = new Breakpoint[sourceBreakpoints.length];
         for (int i = 0; i < sourceBreakpoints.length; i++) {
             SourceBreakpoint sourceBreakpoint = sourceBreakpoints[i];
             int line = sourceBreakpoint.getLine();
-            String condition = sourceBreakpoint.getCondition();
-            RemoteBreakpoint breakpoint = new RemoteBreakpoint(source, line, condition);
-            templateBreakpoints.put(line, breakpoint);
+            RemoteBreakpoint breakpoint = new RemoteBreakpoint(source, sourceBreakpoint, logpointRateLimit);
+            // The id identifies the breakpoint in the changed breakpoint events
+            breakpoint.setId(breakpointIds.incrementAndGet());
+            if (breakpoint.isValid()) {
+                templateBreakpoints.put(line, breakpoint);
+            }
 
-            breakpoint.setVerified(true);
+            breakpoint.setVerified(breakpoint.isValid());
+            result[i] = breakpoint;
+        }
+        if (templateBreakpoints.isEmpty()) {
+            this.breakpoints.remove(templateId);
+        } else {
+            this.breakpoints.put(templateId, Map.copyOf(templateBreakpoints));
+        }
+        updateBreakpointEngines();
+        updateTraceListeners();
+        return result;
+    }
+
+    @Override
+    public DataBreakpointInfoResponse getDataBreakpointInfo(DataBreakpointInfoArguments args) {
+        DataBreakpointInfoResponse response = new DataBreakpointInfoResponse();
+        Integer variablesReference = args.getVariablesReference();
+        String name = args.getName();
+        if (name == null || name.isBlank()) {
+            response.setDescription("No expression to watch.");
+        } else if (variablesReference != null && variablesReference > 0
+                && !(variablesRegistry.getVariablesProvider(variablesReference) instanceof RemoteScope)) {
+            // The children of a variable (ex: the items of a list) have no expression
+            response.setDescription("Only the variables of the Locals / Globals scopes and expressions can be watched.");
+        } else {
+            response.setDataId(name.trim());
+            response.setDescription("Value of '" + name.trim() + "'");
+            response.setAccessTypes(new DataBreakpointAccessType[] { DataBreakpointAccessType.WRITE });
+            response.setCanPersist(Boolean.TRUE);
+        }
+        return response;
+    }
+
+    @Override
+    public Breakpoint[] setDataBreakpoints(DataBreakpoint[] dataBreakpoints) {
+        List<RemoteDataBreakpoint> watched = new ArrayList<>();
+        Breakpoint[] result = new Breakpoint[dataBreakpoints.length];
+        for (int i = 0; i < dataBreakpoints.length; i++) {
+            RemoteDataBreakpoint breakpoint = new RemoteDataBreakpoint(dataBreakpoints[i]);
+            if (breakpoint.getMessage() == null && watched.size() >= maxDataBreakpoints) {
+                breakpoint.setMessage("The maximum number of data breakpoints (" + maxDataBreakpoints + ") is reached.");
+            }
+            if (breakpoint.getMessage() == null) {
+                watched.add(breakpoint);
+                breakpoint.setVerified(true);
+            }
             result[i] = breakpoint;
         }
+        this.dataBreakpoints = watched.toArray(EMPTY_DATA_BREAKPOINTS);
+        updateTraceListeners();
         return result;
     }
 
+    RemoteDataBreakpoint[] getDataBreakpoints() {
+        return dataBreakpoints;
+    }
+
+    /**
+     * Sets the maximum number of data breakpoints, each data breakpoint is evaluated when
+     * the resolution context changes.
+     *
+     * @param maxDataBreakpoints the maximum number of data breakpoints.
+     */
+    public void setMaxDataBreakpoints(int maxDataBreakpoints) {
+        this.maxDataBreakpoints = Math.max(0, maxDataBreakpoints);
+    }
+
+    public int getMaxDataBreakpoints() {
+        return maxDataBreakpoints;
+    }
+
+    @Override
+    public Breakpoint[] setExceptionBreakpoints(String[] filters) {
+        this.exceptionFilter = ExceptionFilter.create(filters);
+        Breakpoint[] result = new Breakpoint[filters != null ? filters.length : 0];
+        for (int i = 0; i < result.length; i++) {
+            Breakpoint breakpoint = new Breakpoint();
+            breakpoint.setVerified(ExceptionFilter.ALL.equals(filters[i]) || ExceptionFilter.NOT_FOUND.equals(filters[i]));
+            result[i] = breakpoint;
+        }
+        updateTraceListeners();
+        return result;
+    }
+
+    @Override
+    public Throwable getException(long threadId) {
+        RemoteThread thread = getRemoteThread(threadId);
+        return thread != null ? thread.getException() : null;
+    }
+
+    /**
+     * Replaces the slow node breakpoints.
+     *
+     * @param slowNodeBreakpoints the new slow node breakpoints.
+     * @return the verified slow node breakpoints.
+     */
+    public Breakpoint[] setSlowNodeBreakpoints(SlowNodeBreakpoint[] slowNodeBreakpoints) {
+        for (SlowNodeBreakpoint breakpoint : slowNodeBreakpoints) {
+            if (breakpoint.getSource() != null) {
+                sourceTemplateRegistry.registerSource(breakpoint.getSource());
+            }
+            breakpoint.setVerified(true);
+        }
+        this.slowNodeBreakpoints = slowNodeBreakpoints.clone();
+        updateBreakpointEngines();
+        updateTraceListeners();
+        return slowNodeBreakpoints;
+    }
+
+    boolean hasSlowNodeBreakpoints() {
+        return slowNodeBreakpoints.length > 0;
+    }
+
+    /**
+     * Returns the first slow node breakpoint of the given template line whose threshold is exceeded.
+     *
+     * @param templateId the template id of the resolved node.
+     * @param line the line of the resolved node.
+     * @param elapsedNanos the resolution time of the node in nanoseconds.
+     * @return the first slow node breakpoint hit or null.
+     */
+    SlowNodeBreakpoint getSlowNodeBreakpoint(String templateId, int line, long elapsedNanos) {
+        for (SlowNodeBreakpoint breakpoint : slowNodeBreakpoints) {
+            if (elapsedNanos >= breakpoint.getThresholdNanos()
+                    && (breakpoint.getLine() == null || breakpoint.getLine() == line)
+                    && isSameTemplate(breakpoint.getTemplateId(), templateId)) {
+                return breakpoint;
+            }
+        }
+        return null;
+    }
+
+    private boolean isSameTemplate(String breakpointTemplateId, String templateId) {
+        if (breakpointTemplateId == null || breakpointTemplateId.equals(templateId)) {
+            return true;
+        }
+        for (var fileExtension : sourceTemplateRegistry.getFileExtensions()) {
+            if (breakpointTemplateId.equals(templateId + fileExtension)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     @Override
     public Thread getThread(long threadId) {
+        if (threadId == SnapshotStore.THREAD_ID && !snapshotStore.isEmpty()) {
+            return snapshotStore.getThread();
+        }
         return debuggees.get(threadId);
     }
 
     @Override
     public Thread[] getThreads() {
-        return debuggees.values() //
-                .toArray(RemoteThread.EMPTY_THREAD);
+        expungeDeadDebuggees();
+        List<Thread> threads = new ArrayList<>(debuggees.values() //
+                .stream() //
+                .filter(RemoteThread::isSessionMatched) //
+                .toList());
+        if (!snapshotStore.isEmpty()) {
+            threads.add(snapshotStore.getThread());
+        }
+        return threads.toArray(RemoteThread.EMPTY_THREAD);
     }
 
     RemoteBreakpoint getBreakpoint(String templateId, int line) {
+        metrics.onBreakpointLookup();
         Map<Integer, RemoteBreakpoint> templateBreakpoints = this.breakpoints.get(templateId);
         if (templateBreakpoints == null) {
             for (var fileExtension : sourceTemplateRegistry.getFileExtensions()) {
@@ -176,6 +957,7 @@ public class DebuggeeAgent implements Debugger {
     }
 
     void fireStoppedEvent(StoppedEvent event) {
+        long start = System.nanoTime();
         for (DebuggerListener listener : listeners) {
             try {
                 listener.onStopped(event);
@@ -183,9 +965,23 @@ public class DebuggeeAgent implements Debugger {
                 e.printStackTrace();
             }
         }
+        metrics.onListenersDispatched(System.nanoTime() - start);
+    }
+
+    void fireBreakpointChanged(Breakpoint breakpoint) {
+        long start = System.nanoTime();
+        for (DebuggerListener listener : listeners) {
+            try {
+                listener.onBreakpointChanged(breakpoint);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        metrics.onListenersDispatched(System.nanoTime() - start);
     }
 
     void fireThreadEvent(ThreadEvent event) {
+        long start = System.nanoTime();
         for (DebuggerListener listener : listeners) {
             try {
                 listener.onThreadChanged(event);
@@ -193,6 +989,7 @@ public class DebuggeeAgent implements Debugger {
                 e.printStackTrace();
             }
         }
+        metrics.onListenersDispatched(System.nanoTime() - start);
     }
 
     void fireTerminateEvent() {
@@ -206,6 +1003,7 @@ public class DebuggeeAgent implements Debugger {
     }
 
     void output(OutputEventArguments args) {
+        long start = System.nanoTime();
         for (DebuggerListener listener : listeners) {
             try {
                 listener.output(args);
@@ -213,18 +1011,45 @@ public class DebuggeeAgent implements Debugger {
                 e.printStackTrace();
             }
         }
+        metrics.onListenersDispatched(System.nanoTime() - start);
+    }
+
+    void output(String message) {
+        OutputEventArguments args = new OutputEventArguments();
+        args.setOutput(message + System.lineSeparator());
+        args.setCategory(OutputEventArgumentsCategory.CONSOLE);
+        output(args);
     }
 
-    private void unlockAllDebuggeeThreads() {
+    private synchronized void unlockAllDebuggeeThreads() {
         // Terminate all current debuggee Thread.
         for (RemoteThread thread : debuggees.values()) {
             thread.terminate();
         }
         debuggees.clear();
+        // Cancel the pause of all threads
+        synchronized (suspendLock) {
+            if (isPauseEpoch(suspendEpoch)) {
+                suspendEpoch++;
+            }
+            suspendLock.notifyAll();
+        }
         // Remove all breakpoints
         this.breakpoints.clear();
+        unreportedBreakpoints.clear();
+        this.slowNodeBreakpoints = SlowNodeBreakpoint.EMPTY_SLOW_NODE_BREAKPOINTS;
+        breakpointEngines.clear();
+        this.exceptionFilter = null;
+        this.dataBreakpoints = EMPTY_DATA_BREAKPOINTS;
+        snapshotStore.clear();
+        // Stop the profiler / flame graph collector enabled by the client
+        profiler.setEnabled(false);
+        flameGraph.setEnabled(false);
+        // Stop the thread which sends the messages of the logpoints
+        logpointOutput.stop();
 
-        trackedEngine.forEach(engine -> engine.removeTraceListener(debugListener));
+        attachedEngines.forEach(engine -> engine.removeTraceListener(debugListener));
+        attachedEngines.clear();
         trackedEngine.clear();
     }
 
@@ -244,6 +1069,7 @@ public class DebuggeeAgent implements Debugger {
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.stepIn();
+            updateTraceListeners();
         }
     }
 
@@ -252,6 +1078,7 @@ public class DebuggeeAgent implements Debugger {
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.stepOut();
+            updateTraceListeners();
         }
     }
 
@@ -260,6 +1087,7 @@ public class DebuggeeAgent implements Debugger {
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.stepOver();
+            updateTraceListeners();
         }
     }
 
@@ -268,6 +1096,23 @@ public class DebuggeeAgent implements Debugger {
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
             thread.next();
+            updateTraceListeners();
+        }
+    }
+
+    @Override
+    public void stepBack(long threadId) {
+        RemoteThread thread = getRemoteThread(threadId);
+        if (thread != null) {
+            thread.stepBack();
+        }
+    }
+
+    @Override
+    public void reverseContinue(long threadId) {
+        RemoteThread thread = getRemoteThread(threadId);
+        if (thread != null) {
+            thread.reverseContinue();
         }
     }
 
@@ -293,9 +1138,20 @@ public class DebuggeeAgent implements Debugger {
     }
 
     @Override
-    public List<RemoteStackFrame> getStackFrames(long threadId) {
+    public List<? extends StackFrame> getStackFrames(long threadId) {
+        if (threadId == SnapshotStore.THREAD_ID) {
+            return snapshotStore.getSnapshots();
+        }
         RemoteThread thread = getRemoteThread(threadId);
         if (thread != null) {
+            FrameSnapshot historyFrame = thread.getHistoryFrame();
+            if (historyFrame != null) {
+                // The thread is stepping back: the recorded node is shown on top of the live frames
+                List<StackFrame> frames = new ArrayList<>();
+                frames.add(historyFrame);
+                frames.addAll(thread.getStackFrames());
+                return frames;
+            }
             return thread.getStackFrames();
         }
         return null;
@@ -303,7 +1159,15 @@ public class DebuggeeAgent implements Debugger {
 
     @Override
     public Scope[] getScopes(int frameId) {
+        FrameSnapshot snapshot = snapshotStore.getSnapshot(frameId);
+        if (snapshot != null) {
+            return snapshot.getScopes(variablesRegistry);
+        }
         for (RemoteThread thread : debuggees.values()) {
+            FrameSnapshot historyFrame = thread.getHistoryFrame();
+            if (historyFrame != null && historyFrame.getId() == frameId) {
+                return historyFrame.getScopes(variablesRegistry);
+            }
             RemoteStackFrame frame = thread.getStackFrame(frameId);
             if (frame != null) {
                 return frame.getScopes() //
@@ -381,6 +1245,7 @@ public class DebuggeeAgent implements Debugger {
     @Override
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        updateTraceListeners();
     }
 
     @Override
@@ -17,6 +17,11 @@ public class DebuggerTraceListener extends TraceListenerAdapter {
         agent.onTemplateNode(event);
     }
 
+    @Override
+    public void onAfterResolve(ResolveEvent event) {
+        agent.onAfterTemplateNode(event);
+    }
+
     @Override
     public void onStartTemplate(TemplateEvent event) {
         agent.onStartTemplate(event);
@@ -33,7 +33,7 @@ public class RemoteStackFrame extends StackFrame {
         this.event = event;
         this.previousFrame = previousFrame;
         this.variablesRegistry = variablesRegistry;
-        int id = frameIdCounter.incrementAndGet();
+        int id = nextFrameId();
         int line = event.getTemplateNode().getOrigin().getLine();
 
         super.setId(id);
@@ -43,10 +43,23 @@ public class RemoteStackFrame extends StackFrame {
         super.setSource(sourceTemplateRegistry.getSource(templateId, previousFrame != null ? previousFrame.getSource() : null));
     }
 
+    /**
+     * Returns a new stack frame id.
+     *
+     * @return a new stack frame id.
+     */
+    public static int nextFrameId() {
+        return frameIdCounter.incrementAndGet();
+    }
+
     public String getTemplateId() {
         return templateId;
     }
 
+    public ResolveEvent getEvent() {
+        return event;
+    }
+
     public RemoteStackFrame getPrevious() {
         return previousFrame;
     }
@@ -1,14 +1,24 @@
 package io.quarkus.qute.debug.agent;
 
+import io.quarkus.qute.Engine;
 import io.quarkus.qute.TemplateNode;
 import io.quarkus.qute.debug.*;
 import io.quarkus.qute.debug.StoppedEvent.StoppedReason;
+import io.quarkus.qute.debug.agent.condition.ExceptionFilter;
+import io.quarkus.qute.debug.agent.profiler.ResolveStack;
+import io.quarkus.qute.debug.agent.snapshot.ExecutionHistory;
+import io.quarkus.qute.debug.agent.snapshot.FrameSnapshot;
 import io.quarkus.qute.debug.ThreadEvent.ThreadStatus;
 import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+import org.eclipse.lsp4j.debug.OutputEventArguments;
+import org.eclipse.lsp4j.debug.OutputEventArgumentsCategory;
 import org.eclipse.lsp4j.debug.Thread;
 
+import java.lang.ref.WeakReference;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 public class RemoteThread extends Thread{
@@ -21,54 +31,125 @@ public class RemoteThread extends Thread{
         return !node.isText();
     };
 
-    private transient DebuggerState state;
+    private transient volatile DebuggerState state;
 
+    // Lock shared by all the debuggee threads of the agent to suspend / resume them.
     private transient final Object lock;
 
     private transient final LinkedList<RemoteStackFrame> frames;
 
+    // Start times of the nodes being resolved, used by the slow node breakpoints
+    private transient ResolveStack resolveStack;
+
     private transient final DebuggeeAgent agent;
 
-    private transient Predicate<TemplateNode> stopCondition;
+    private transient volatile Predicate<TemplateNode> stopCondition;
+
+    // The engine of the current render, weakly referenced so that a debuggee whose end template
+    // event is never received doesn't keep a discarded engine in memory
+    private transient WeakReference<Engine> engine;
+
+    // The start event of the current render, its end event can be received by another thread
+    private transient TemplateEvent render;
+
+    // The debugged thread and its id, the thread is weakly referenced to detect when it dies
+    private transient final WeakReference<java.lang.Thread> thread;
+    private transient final long threadId;
+
+    // True if the start template event of the current render has been received, false if the
+    // trace listener has been registered while the render was in progress
+    private transient boolean started;
+
+    // Last suspend epoch (see DebuggeeAgent#pauseAll) which has paused this thread
+    private transient long pausedEpoch;
+
+    // State of the data breakpoints for the current render
+    private transient RemoteDataBreakpoint[] watchedBreakpoints;
+    private transient DataWatch[] dataWatches;
+
+    // Resolution error which has suspended the thread
+    private transient volatile Throwable exception;
+
+    // Last resolution error checked by the exception breakpoints, the error is propagated to the parent nodes
+    private transient Throwable lastError;
+
+    // Result of the session filter for the current render, null if it is not known yet
+    private transient volatile Boolean sessionMatched;
+
+    // Last nodes executed by the current render, null if the step back is disabled
+    private transient ExecutionHistory history;
+
+    // Position in the history while stepping back (0 for the live node) and its stack frame
+    private transient volatile int historyPosition;
+    private transient volatile FrameSnapshot historyFrame;
 
     public RemoteThread(java.lang.Thread thread, DebuggeeAgent agent) {
-        this.lock = new Object();
+        this.lock = agent.getSuspendLock();
         this.frames = new LinkedList<>();
+        this.thread = new WeakReference<>(thread);
+        this.threadId = thread.threadId();
         super.setId((int) thread.threadId());
         super.setName(thread.getName());
         this.agent = agent;
         this.state = DebuggerState.INITIALIZED;
     }
 
+    /**
+     * Returns the id of the debugged thread (see {@link java.lang.Thread#threadId()}).
+     *
+     * @return the id of the debugged thread.
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * Returns true if the debugged thread is alive.
+     *
+     * @return true if the debugged thread is alive.
+     */
+    public boolean isThreadAlive() {
+        java.lang.Thread thread = this.thread.get();
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Returns true if the start template event of the current render has been received.
+     *
+     * @return true if the start template event of the current render has been received.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
     public DebuggerState getState() {
-        synchronized (this.lock) {
-            return this.state;
-        }
+        return this.state;
     }
 
     public void pause() {
-        synchronized (this.lock) {
-            switch (state) {
-                case STOPPED:
-                    throw new DebuggerStoppedException(null);
-                case RUNNING:
-                    this.stopCondition = TRUE_CONDITION;
-                    break;
-                default:
-                    throw new IllegalStateException();
-            }
+        switch (state) {
+            case STOPPED:
+                throw new DebuggerStoppedException(null);
+            case SUSPENDED:
+                // Already paused
+                break;
+            default:
+                this.stopCondition = TRUE_CONDITION;
         }
     }
 
     public void resume() {
         synchronized (this.lock) {
+            if (state == DebuggerState.SUSPENDED) {
+                leaveHistory();
+            }
             switch (state) {
                 case STOPPED:
                     throw new DebuggerStoppedException(null);
                 case RUNNING:
                 default:
                     if (state != DebuggerState.SUSPENDED) {
-                        throw new IllegalStateException();
+                        throw new IllegalStateException("The thread '" + getName() + "' is not suspended.");
                     }
                     this.state = DebuggerState.RUNNING;
                     this.lock.notifyAll();
@@ -76,12 +157,30 @@ public class RemoteThread extends Thread{
         }
     }
 
-    public boolean isStopped() {
-        synchronized (this.lock) {
-            return this.state == DebuggerState.STOPPED;
+    /**
+     * Marks the thread as running if it is suspended, the caller must hold the suspend lock
+     * and notify it.
+     */
+    void markResumed() {
+        if (this.state == DebuggerState.SUSPENDED) {
+            leaveHistory();
+            this.state = DebuggerState.RUNNING;
         }
     }
 
+    /**
+     * Returns true if the thread is suspended or if a pause / step is requested for it.
+     *
+     * @return true if the thread is suspended or if a pause / step is requested for it.
+     */
+    public boolean hasPendingStop() {
+        return this.state == DebuggerState.SUSPENDED || this.stopCondition != null;
+    }
+
+    public boolean isStopped() {
+        return this.state == DebuggerState.STOPPED;
+    }
+
     public void onTemplateNode(ResolveEvent event) {
         if (this.isStopped()) {
             return; // throw new DebuggerStoppedException();
@@ -89,43 +188,220 @@ public class RemoteThread extends Thread{
 
         RemoteStackFrame frame = new RemoteStackFrame(event, getCurrentFrame(), agent.getSourceTemplateRegistry(), agent.getVariablesRegistry() );
         this.frames.addFirst(frame);
+        agent.getMetrics().onFrameCreated();
+        if (history != null) {
+            history.record(frame);
+        }
         String templateId = frame.getTemplateId();
         RemoteStackFrame previous = frame.getPrevious();
 
-        if (this.stopCondition != null && this.stopCondition.test(event.getTemplateNode())) {
+        // The watched expressions are checked for each node to keep their state up to date
+        boolean dataChanged = checkDataBreakpoints(frame);
+
+        Predicate<TemplateNode> stopCondition = this.stopCondition;
+        long suspendEpoch = agent.getSuspendEpoch();
+        if (stopCondition != null && stopCondition.test(event.getTemplateNode())) {
             // suspend and wait because of step reason.
             this.suspendAndWait(StoppedReason.STEP);
+        } else if (DebuggeeAgent.isPauseEpoch(suspendEpoch) && suspendEpoch != pausedEpoch) {
+            // suspend and wait because all threads must be paused.
+            this.pausedEpoch = suspendEpoch;
+            this.suspendAndWait(StoppedReason.PAUSE);
+        } else if (dataChanged) {
+            // suspend and wait because of data breakpoint reason.
+            this.suspendAndWait(StoppedReason.DATA_BREAKPOINT);
         } else {
             int lineNumber = frame.getLine();
             RemoteBreakpoint breakpoint = agent.getBreakpoint(templateId, lineNumber);
-            if (breakpoint != null && (previous == null || (!previous.getTemplateId().equals(templateId)) || previous.getLine() != lineNumber) && breakpoint.checkCondition(frame)) {
-                // suspend and wait because of breakpoint reason.
-                this.suspendAndWait(StoppedReason.BREAKPOINT);
+            if (breakpoint != null && (previous == null || (!previous.getTemplateId().equals(templateId)) || previous.getLine() != lineNumber)
+                    && checkHitCondition(breakpoint) && checkCondition(breakpoint, frame)) {
+                agent.getMetrics().onBreakpointHit();
+                if (breakpoint.getLogMessage() != null) {
+                    // log the message of the logpoint without suspending.
+                    agent.log(breakpoint, frame);
+                } else if (breakpoint.isSnapshot()) {
+                    // copy the variables without suspending.
+                    agent.takeSnapshot(this, frame);
+                } else {
+                    // suspend and wait because of breakpoint reason.
+                    if (!this.suspendAndWait(StoppedReason.BREAKPOINT)) {
+                        agent.onSkippedHit(breakpoint);
+                    }
+                }
             }
         }
+
+        if (agent.hasSlowNodeBreakpoints()) {
+            // Started after the suspension to measure only the resolution time of the node
+            if (resolveStack == null) {
+                // Allocated only once slow node breakpoints are set
+                resolveStack = new ResolveStack();
+            }
+            resolveStack.push(event, System.nanoTime());
+        }
+    }
+
+    private boolean checkHitCondition(RemoteBreakpoint breakpoint) {
+        if (breakpoint.checkHitCondition()) {
+            return true;
+        }
+        agent.onSkippedHit(breakpoint);
+        return false;
+    }
+
+    private boolean checkCondition(RemoteBreakpoint breakpoint, RemoteStackFrame frame) {
+        String condition = breakpoint.getCondition();
+        if (condition == null || condition.isBlank()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            return breakpoint.checkCondition(frame);
+        } finally {
+            agent.getMetrics().onConditionEvaluated(System.nanoTime() - start);
+        }
     }
 
-    private void suspendAndWait(StoppedReason reason) {
+    private boolean checkCondition(RemoteDataBreakpoint breakpoint, RemoteStackFrame frame) {
+        String condition = breakpoint.getCondition();
+        if (condition == null || condition.isBlank()) {
+            return true;
+        }
+        long start = System.nanoTime();
         try {
+            return breakpoint.checkCondition(frame);
+        } finally {
+            agent.getMetrics().onConditionEvaluated(System.nanoTime() - start);
+        }
+    }
+
+    private boolean checkDataBreakpoints(RemoteStackFrame frame) {
+        RemoteDataBreakpoint[] dataBreakpoints = agent.getDataBreakpoints();
+        if (dataBreakpoints != watchedBreakpoints) {
+            // The data breakpoints have been updated
+            watchedBreakpoints = dataBreakpoints;
+            dataWatches = new DataWatch[dataBreakpoints.length];
+            for (int i = 0; i < dataBreakpoints.length; i++) {
+                dataWatches[i] = new DataWatch(dataBreakpoints[i]);
+            }
+        }
+        boolean changed = false;
+        for (DataWatch dataWatch : dataWatches) {
+            RemoteDataBreakpoint breakpoint = dataWatch.getBreakpoint();
+            if (dataWatch.hasChanged(frame) && breakpoint.checkHitCondition() && checkCondition(breakpoint, frame)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks the exception breakpoints and the slow node breakpoints once the given node has been resolved.
+     *
+     * @param event the resolve event.
+     * @param exceptionFilter the filter of the exception breakpoints if the node has failed, null otherwise.
+     */
+    public void onAfterTemplateNode(ResolveEvent event, ExceptionFilter exceptionFilter) {
+        long start = resolveStack != null ? resolveStack.pop(event) : -1;
+        if (this.isStopped()) {
+            return;
+        }
+        if (exceptionFilter != null) {
+            Throwable error = ExceptionFilter.unwrap(event.getError());
+            // Only the node which has failed is suspended, not its parents
+            if (error != lastError) {
+                lastError = error;
+                if (exceptionFilter.matches(error)) {
+                    this.exception = error;
+                    try {
+                        // suspend and wait because of exception reason.
+                        this.suspendAndWait(StoppedReason.EXCEPTION);
+                    } finally {
+                        this.exception = null;
+                    }
+                    return;
+                }
+            }
+        }
+        if (start == -1) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        TemplateNode.Origin origin = event.getTemplateNode().getOrigin();
+        SlowNodeBreakpoint breakpoint = agent.getSlowNodeBreakpoint(origin.getTemplateId(), origin.getLine(), elapsed);
+        if (breakpoint == null) {
+            return;
+        }
+        OutputEventArguments args = new OutputEventArguments();
+        args.setOutput(String.format("Slow node %s at %s:%d took %.3fms (threshold %.3fms)%n", event.getTemplateNode(),
+                origin.getTemplateId(), origin.getLine(), elapsed / 1_000_000.0, breakpoint.getThresholdNanos() / 1_000_000.0));
+        args.setCategory(OutputEventArgumentsCategory.CONSOLE);
+        args.setSource(agent.getSourceTemplateRegistry().getSource(origin.getTemplateId(), null));
+        args.setLine(origin.getLine());
+        agent.output(args);
+        if (breakpoint.isSuspend()) {
+            // suspend and wait because of slow node breakpoint reason.
+            this.suspendAndWait(StoppedReason.BREAKPOINT);
+        }
+    }
+
+    /**
+     * Suspends the thread until it is resumed.
+     *
+     * @param reason the stop reason.
+     * @return false if the hit has been skipped because of the suspension budget.
+     */
+    private boolean suspendAndWait(StoppedReason reason) {
+        // A step is requested by the user for this thread, it is not limited by the suspension budget.
+        if (!agent.acquireSuspension(reason == StoppedReason.STEP)) {
+            return false;
+        }
+        long suspendStart = System.nanoTime();
+        boolean timedOut = false;
+        try {
+            // The thread is resumed either by itself or by a continue all (see DebuggeeAgent#resumeAll),
+            // which marks all the suspended threads as running.
             synchronized (this.lock) {
                 this.state = DebuggerState.SUSPENDED;
-                this.lock.notifyAll();
                 this.stopCondition = null;
+            }
 
-                StoppedEvent e = new StoppedEvent(getId(), reason);
-                agent.fireStoppedEvent(e);
+            StoppedEvent e = new StoppedEvent(getId(), reason);
+            agent.fireStoppedEvent(e);
 
+            long timeout = agent.getSuspendTimeout();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            synchronized (this.lock) {
                 while (this.state == DebuggerState.SUSPENDED) {
-                    this.lock.wait();
+                    if (timeout > 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timedOut = true;
+                            break;
+                        }
+                        this.lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    } else {
+                        this.lock.wait();
+                    }
+                }
+                if (this.state == DebuggerState.SUSPENDED) {
+                    this.state = DebuggerState.RUNNING;
                 }
-
                 if (this.state == DebuggerState.STOPPED) {
                     // throw new DebuggerStoppedException();
                 }
             }
         } catch (InterruptedException e) {
             // throw new DebuggerStoppedException();
+        } finally {
+            agent.getMetrics().onSuspended(System.nanoTime() - suspendStart);
+            agent.releaseSuspension();
         }
+        if (timedOut) {
+            agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.CONTINUED));
+            agent.output("Thread '" + getName() + "' resumed automatically after " + agent.getSuspendTimeout() + "ms.");
+        }
+        return true;
     }
 
     private RemoteStackFrame getCurrentFrame() {
@@ -140,6 +416,11 @@ public class RemoteThread extends Thread{
     }
 
     public void stepIn() {
+        // Checked before the stop condition is changed, which would stop a running thread
+        checkSuspended();
+        if (stepForwardInHistory()) {
+            return;
+        }
         this.stopCondition = TRUE_CONDITION;
         this.resume();
     }
@@ -149,6 +430,10 @@ public class RemoteThread extends Thread{
     }
 
     public void stepOver() {
+        checkSuspended();
+        if (stepForwardInHistory()) {
+            return;
+        }
         int frameSize = this.frames.size();
         this.stopCondition = node -> {
             return this.frames.size() <= frameSize;
@@ -157,10 +442,98 @@ public class RemoteThread extends Thread{
     }
 
     public void next() {
+        checkSuspended();
+        if (stepForwardInHistory()) {
+            return;
+        }
         this.stopCondition = EXPRESSION_CONDITION;
         this.resume();
     }
 
+    /**
+     * Moves the suspended thread one node back in the execution history, the thread stays suspended.
+     */
+    public void stepBack() {
+        checkSuspended();
+        ExecutionHistory history = this.history;
+        if (history != null && historyPosition + 1 < history.size()) {
+            moveInHistory(historyPosition + 1);
+        }
+        agent.fireStoppedEvent(new StoppedEvent(getId(), StoppedReason.STEP));
+    }
+
+    /**
+     * Moves the suspended thread back in the execution history to the last node which has a breakpoint,
+     * or to the oldest recorded node, the thread stays suspended.
+     */
+    public void reverseContinue() {
+        checkSuspended();
+        ExecutionHistory history = this.history;
+        StoppedReason reason = StoppedReason.STEP;
+        if (history != null && history.size() > 0) {
+            int position = historyPosition + 1;
+            while (position < history.size()) {
+                ExecutionHistory.Entry entry = history.get(position);
+                // Like the live breakpoints, stop at the first node of the line
+                if (agent.getBreakpoint(entry.getTemplateId(), entry.getLine()) != null
+                        && (position + 1 == history.size() || !isSameLine(entry, history.get(position + 1)))) {
+                    reason = StoppedReason.BREAKPOINT;
+                    break;
+                }
+                position++;
+            }
+            position = Math.min(position, history.size() - 1);
+            if (position > historyPosition) {
+                moveInHistory(position);
+            }
+        }
+        agent.fireStoppedEvent(new StoppedEvent(getId(), reason));
+    }
+
+    private static boolean isSameLine(ExecutionHistory.Entry entry, ExecutionHistory.Entry previous) {
+        return entry.getLine() == previous.getLine() && entry.getTemplateId().equals(previous.getTemplateId());
+    }
+
+    /**
+     * Moves the thread one node forward in the execution history if it is stepping back.
+     *
+     * @return true if the thread was stepping back and stays suspended, false if it must be resumed.
+     */
+    private boolean stepForwardInHistory() {
+        if (historyPosition == 0 || state != DebuggerState.SUSPENDED) {
+            return false;
+        }
+        moveInHistory(historyPosition - 1);
+        agent.fireStoppedEvent(new StoppedEvent(getId(), StoppedReason.STEP));
+        return true;
+    }
+
+    private void moveInHistory(int position) {
+        this.historyFrame = position > 0 ? history.get(position).toFrame(getName(), DebuggeeAgent.getSnapshotMaxDepth(),
+                DebuggeeAgent.getSnapshotMaxVariables()) : null;
+        this.historyPosition = position;
+    }
+
+    private void leaveHistory() {
+        this.historyPosition = 0;
+        this.historyFrame = null;
+    }
+
+    private void checkSuspended() {
+        if (state != DebuggerState.SUSPENDED) {
+            throw new IllegalStateException("The thread '" + getName() + "' is not suspended.");
+        }
+    }
+
+    /**
+     * Returns the stack frame of the recorded node shown while the thread is stepping back.
+     *
+     * @return the stack frame of the recorded node or null if the thread is not stepping back.
+     */
+    public FrameSnapshot getHistoryFrame() {
+        return historyFrame;
+    }
+
     public List<RemoteStackFrame> getStackFrames() {
         return frames;
     }
@@ -174,13 +547,94 @@ public class RemoteThread extends Thread{
         return null;
     }
 
-    public void start() {
+    /**
+     * Returns the resolution error which has suspended the thread.
+     *
+     * @return the resolution error which has suspended the thread or null.
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    public Engine getEngine() {
+        WeakReference<Engine> engine = this.engine;
+        return engine != null ? engine.get() : null;
+    }
+
+    void setEngine(Engine engine) {
+        if (getEngine() != engine) {
+            this.engine = new WeakReference<>(engine);
+        }
+    }
+
+    /**
+     * Returns true if the current render must be debugged according to the session filter of the agent.
+     * The filter is evaluated once per render and the result is cached.
+     *
+     * @param event the resolve event.
+     * @param sessionFilter the session filter or null.
+     * @return true if the current render must be debugged.
+     */
+    public boolean isSessionMatched(ResolveEvent event, SessionFilter sessionFilter) {
+        Boolean matched = this.sessionMatched;
+        if (matched == null) {
+            matched = sessionFilter == null || sessionFilter.matches(event.getContext());
+            this.sessionMatched = matched;
+            if (matched) {
+                this.agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.STARTED));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Returns true if the current render is known to be debugged.
+     *
+     * @return true if the current render is known to be debugged.
+     */
+    public boolean isSessionMatched() {
+        return Boolean.TRUE.equals(sessionMatched);
+    }
+
+    public void start(TemplateEvent render, Boolean sessionMatched) {
+        this.render = render;
+        started = true;
         frames.clear();
-        this.agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.STARTED));
+        if (resolveStack != null) {
+            resolveStack.clear();
+        }
+        lastError = null;
+        watchedBreakpoints = null;
+        history = agent.getExecutionHistory();
+        leaveHistory();
+        this.sessionMatched = sessionMatched;
+        if (isSessionMatched()) {
+            this.agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.STARTED));
+        }
+    }
+
+    /**
+     * Returns true if the given event is the start event of the current render.
+     *
+     * @param event the template event.
+     * @return true if the given event is the start event of the current render.
+     */
+    public boolean isRendering(TemplateEvent event) {
+        return render == event;
     }
 
     public void exit() {
-        this.agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.EXITED));
+        ExecutionHistory history = this.history;
+        if (history != null && java.lang.Thread.currentThread().threadId() == threadId) {
+            // Release the recorded variables, the history is reused by the next render of the thread
+            this.history = null;
+            history.clear();
+        }
+        engine = null;
+        render = null;
+        if (isSessionMatched()) {
+            this.agent.fireThreadEvent(new ThreadEvent(getId(), ThreadStatus.EXITED));
+        }
     }
 
 }
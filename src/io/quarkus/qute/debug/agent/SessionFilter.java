@@ -0,0 +1,84 @@
+package io.quarkus.qute.debug.agent;
+
+import io.quarkus.qute.Mapper;
+import io.quarkus.qute.ResolutionContext;
+import io.quarkus.qute.TemplateInstance;
+
+import java.util.Map;
+
+/**
+ * Filter used to debug only the renders which carry a debug marker:
+ * <ul>
+ * <li>a {@link TemplateInstance} attribute (see {@link TemplateInstance#setAttribute(String, Object)}),</li>
+ * <li>or a key of the root data (see {@link TemplateInstance#data(String, Object)}).</li>
+ * </ul>
+ * Breakpoints, steps and pauses are ignored for the other renders.
+ */
+public class SessionFilter {
+
+    private final String attribute;
+
+    private final String dataKey;
+
+    public SessionFilter(String attribute, String dataKey) {
+        this.attribute = attribute;
+        this.dataKey = dataKey;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public String getDataKey() {
+        return dataKey;
+    }
+
+    /**
+     * Returns true if the given template instance carries the debug attribute, false if it doesn't
+     * and null if the root data must be checked (see {@link #matches(ResolutionContext)}).
+     *
+     * @param templateInstance the template instance which starts to render.
+     * @return true if the given template instance matches, false if it doesn't and null if it is not known yet.
+     */
+    public Boolean matches(TemplateInstance templateInstance) {
+        if (attribute != null && getAttribute(templateInstance) != null) {
+            return Boolean.TRUE;
+        }
+        return dataKey != null ? null : Boolean.FALSE;
+    }
+
+    /**
+     * Returns true if the render of the given resolution context carries the debug attribute or the debug data key.
+     *
+     * @param context a resolution context of the render.
+     * @return true if the render of the given resolution context carries the debug attribute or the debug data key.
+     */
+    public boolean matches(ResolutionContext context) {
+        if (attribute != null && context.getAttribute(attribute) != null) {
+            return true;
+        }
+        if (dataKey == null) {
+            return false;
+        }
+        var rootContext = context;
+        while (rootContext.getParent() != null) {
+            rootContext = rootContext.getParent();
+        }
+        Object data = rootContext.getData();
+        if (data instanceof Map<?, ?> dataMap) {
+            return dataMap.containsKey(dataKey);
+        }
+        if (data instanceof Mapper dataMapper) {
+            return dataMapper.mappedKeys().contains(dataKey);
+        }
+        return false;
+    }
+
+    private Object getAttribute(TemplateInstance templateInstance) {
+        try {
+            return templateInstance.getAttribute(attribute);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -55,6 +55,27 @@ public class SourceTemplateRegistry {
         return source;
     }
 
+    /**
+     * Returns the path of the source file of the given template id, or the template id
+     * if the source file cannot be found.
+     *
+     * @param templateId the template id.
+     * @return the path of the source file of the given template id.
+     */
+    public String getSourcePath(String templateId) {
+        var source = getSource(templateId, null);
+        if (source != null) {
+            return source.getPath();
+        }
+        for (var basePath : basePaths) {
+            String sourcePath = getValidSourcePath(basePath + templateId);
+            if (sourcePath != null) {
+                return sourcePath;
+            }
+        }
+        return templateId;
+    }
+
     private String getValidSourcePath(String sourcePath) {
         if (Files.exists(Paths.get(sourcePath))) {
             return sourcePath;
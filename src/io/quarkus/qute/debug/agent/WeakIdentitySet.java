@@ -0,0 +1,133 @@
+package io.quarkus.qute.debug.agent;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set which compares its elements by identity and references them weakly, used to
+ * track the engines without keeping the discarded ones (and their templates) in memory.
+ * <p>
+ * The elements which have been garbage collected are enqueued in a {@link ReferenceQueue}
+ * and removed from the set at the next access.
+ *
+ * @param <T> the element type.
+ */
+public class WeakIdentitySet<T> implements Iterable<T> {
+
+    private final Set<IdentityWeakReference<T>> references = new HashSet<>();
+
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    /**
+     * Adds the given element.
+     *
+     * @param element the element.
+     * @return true if the element was not in the set.
+     */
+    public synchronized boolean add(T element) {
+        expungeStaleReferences();
+        return references.add(new IdentityWeakReference<>(element, queue));
+    }
+
+    /**
+     * Removes the given element.
+     *
+     * @param element the element.
+     * @return true if the element was in the set.
+     */
+    public synchronized boolean remove(T element) {
+        expungeStaleReferences();
+        return references.remove(new IdentityWeakReference<>(element, null));
+    }
+
+    public synchronized boolean contains(T element) {
+        expungeStaleReferences();
+        return references.contains(new IdentityWeakReference<>(element, null));
+    }
+
+    public synchronized int size() {
+        expungeStaleReferences();
+        return references.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public synchronized void clear() {
+        references.clear();
+        // The cleared references don't need to be expunged anymore
+        while (queue.poll() != null) {
+            // drain
+        }
+    }
+
+    /**
+     * Returns the elements which are still alive.
+     *
+     * @return a copy of the elements which are still alive.
+     */
+    public synchronized List<T> toList() {
+        expungeStaleReferences();
+        List<T> elements = new ArrayList<>(references.size());
+        for (IdentityWeakReference<T> reference : references) {
+            T element = reference.get();
+            if (element != null) {
+                elements.add(element);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Returns an iterator over a copy of the elements which are still alive.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return toList().iterator();
+    }
+
+    private void expungeStaleReferences() {
+        Reference<? extends T> reference;
+        while ((reference = queue.poll()) != null) {
+            references.remove(reference);
+        }
+    }
+
+    /**
+     * Weak reference which keeps the identity hash code of its referent, so that it can
+     * still be found (by identity) in the set once the referent has been collected.
+     */
+    private static class IdentityWeakReference<T> extends WeakReference<T> {
+
+        private final int hash;
+
+        IdentityWeakReference(T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityWeakReference<?> other)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == other.get();
+        }
+    }
+}
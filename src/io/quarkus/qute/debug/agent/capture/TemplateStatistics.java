@@ -0,0 +1,77 @@
+package io.quarkus.qute.debug.agent.capture;
+
+/**
+ * Statistics of a template computed from a captured trace (see {@link TraceFileReader}).
+ */
+public class TemplateStatistics {
+
+    private final String templateId;
+    private long renders;
+    private long totalRenderNanos;
+    private long maxRenderNanos;
+    private long resolvedNodes;
+    private long errors;
+
+    TemplateStatistics(String templateId) {
+        this.templateId = templateId;
+    }
+
+    void addRender(long durationNanos) {
+        renders++;
+        if (durationNanos >= 0) {
+            totalRenderNanos += durationNanos;
+            maxRenderNanos = Math.max(maxRenderNanos, durationNanos);
+        }
+    }
+
+    void addResolvedNode(boolean error) {
+        resolvedNodes++;
+        if (error) {
+            errors++;
+        }
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * Returns the number of renders of the template (the included templates are part of the render
+     * of their parent).
+     *
+     * @return the number of renders of the template.
+     */
+    public long getRenders() {
+        return renders;
+    }
+
+    public long getTotalRenderNanos() {
+        return totalRenderNanos;
+    }
+
+    public long getMaxRenderNanos() {
+        return maxRenderNanos;
+    }
+
+    public long getAverageRenderNanos() {
+        return renders > 0 ? totalRenderNanos / renders : 0;
+    }
+
+    /**
+     * Returns the number of nodes of the template which have been resolved.
+     *
+     * @return the number of nodes of the template which have been resolved.
+     */
+    public long getResolvedNodes() {
+        return resolvedNodes;
+    }
+
+    /**
+     * Returns the number of nodes of the template which have failed to be resolved.
+     *
+     * @return the number of nodes of the template which have failed to be resolved.
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
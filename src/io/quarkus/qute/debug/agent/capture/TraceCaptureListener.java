@@ -0,0 +1,143 @@
+package io.quarkus.qute.debug.agent.capture;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.debug.agent.profiler.ResolveStack;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+import io.quarkus.qute.trace.TraceListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link TraceListener} which captures all the trace events of the renders in binary
+ * trace files (see {@link TraceFileWriter}), without debugger and without DAP client:
+ *
+ * <pre>
+ * TraceCaptureListener capture = new TraceCaptureListener(new TraceFileWriter(dir, "trace", 64 * 1024 * 1024, 16));
+ * engine.addTraceListener(capture);
+ * ...
+ * capture.close();
+ * </pre>
+ * <p>
+ * The records are encoded in a buffer of the render thread, which is copied to the
+ * memory-mapped file when it is full and when the render ends. The records of the
+ * renders in progress when the capture is closed are lost.
+ * <p>
+ * The traces are read with {@link TraceFileReader}.
+ */
+public class TraceCaptureListener implements TraceListener, Closeable {
+
+    private static final int BUFFER_RECORDS = 256;
+
+    // Maximum depth of the nested templates ({#include}, user tags...)
+    private static final int MAX_TEMPLATE_DEPTH = 64;
+
+    private final TraceFileWriter writer;
+
+    private final ThreadLocal<ThreadBuffer> buffers;
+
+    public TraceCaptureListener(TraceFileWriter writer) {
+        this.writer = writer;
+        this.buffers = ThreadLocal.withInitial(ThreadBuffer::new);
+    }
+
+    @Override
+    public void onStartTemplate(TemplateEvent event) {
+        long now = System.nanoTime();
+        ThreadBuffer buffer = buffers.get();
+        int templateIndex = writer.intern(event.getTemplateInstance().getTemplate().getId());
+        buffer.pushTemplate(event, now);
+        buffer.write(TraceRecord.Type.START_TEMPLATE, now, -1, templateIndex, 0, null, false);
+    }
+
+    @Override
+    public void onBeforeResolve(ResolveEvent event) {
+        long now = System.nanoTime();
+        ThreadBuffer buffer = buffers.get();
+        TemplateNode node = event.getTemplateNode();
+        TemplateNode.Origin origin = node.getOrigin();
+        buffer.write(TraceRecord.Type.BEFORE_RESOLVE, now, -1, writer.intern(origin.getTemplateId()), origin.getLine(),
+                node.kind(), false);
+        buffer.resolveStack.push(event, now);
+    }
+
+    @Override
+    public void onAfterResolve(ResolveEvent event) {
+        long now = System.nanoTime();
+        ThreadBuffer buffer = buffers.get();
+        long start = buffer.resolveStack.pop(event);
+        TemplateNode node = event.getTemplateNode();
+        TemplateNode.Origin origin = node.getOrigin();
+        buffer.write(TraceRecord.Type.AFTER_RESOLVE, now, start != -1 ? now - start : -1,
+                writer.intern(origin.getTemplateId()), origin.getLine(), node.kind(), event.getError() != null);
+    }
+
+    @Override
+    public void onEndTemplate(TemplateEvent event) {
+        long now = System.nanoTime();
+        ThreadBuffer buffer = buffers.get();
+        long start = buffer.popTemplate(event);
+        int templateIndex = writer.intern(event.getTemplateInstance().getTemplate().getId());
+        buffer.write(TraceRecord.Type.END_TEMPLATE, now, start != -1 ? now - start : -1, templateIndex, 0, null, false);
+        if (buffer.templateDepth == 0) {
+            // The render is done: don't keep its records in the buffer of the thread
+            buffer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Records of a render thread which are not yet written in the trace files.
+     */
+    private class ThreadBuffer {
+
+        private final ByteBuffer records = ByteBuffer.allocate(BUFFER_RECORDS * TraceFormat.RECORD_SIZE);
+        private final ResolveStack resolveStack = new ResolveStack();
+        private final TemplateEvent[] templates = new TemplateEvent[MAX_TEMPLATE_DEPTH];
+        private final long[] templateStarts = new long[MAX_TEMPLATE_DEPTH];
+        private final long threadId = Thread.currentThread().threadId();
+        private int templateDepth;
+
+        void write(TraceRecord.Type type, long timestamp, long durationNanos, int templateIndex, int line,
+                TemplateNode.Kind kind, boolean error) {
+            if (records.remaining() < TraceFormat.RECORD_SIZE) {
+                flush();
+            }
+            TraceFormat.writeRecord(records, type, timestamp, threadId, durationNanos, templateIndex, line, kind, error);
+        }
+
+        void flush() {
+            records.flip();
+            writer.write(records);
+            records.clear();
+        }
+
+        void pushTemplate(TemplateEvent event, long start) {
+            if (templateDepth < MAX_TEMPLATE_DEPTH) {
+                templates[templateDepth] = event;
+                templateStarts[templateDepth] = start;
+                templateDepth++;
+            }
+        }
+
+        long popTemplate(TemplateEvent event) {
+            for (int i = templateDepth - 1; i >= 0; i--) {
+                if (templates[i] == event) {
+                    // Forget the templates above which have been rendered asynchronously by another thread
+                    for (int j = i; j < templateDepth; j++) {
+                        templates[j] = null;
+                    }
+                    templateDepth = i;
+                    return templateStarts[i];
+                }
+            }
+            return -1;
+        }
+    }
+}
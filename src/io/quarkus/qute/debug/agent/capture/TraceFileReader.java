@@ -0,0 +1,157 @@
+package io.quarkus.qute.debug.agent.capture;
+
+import io.quarkus.qute.debug.agent.coverage.TemplateCoverage;
+import io.quarkus.qute.debug.agent.profiler.LatencyHistogram;
+import io.quarkus.qute.debug.agent.profiler.ProfileEntry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the trace files written by {@link TraceFileWriter}, to compute statistics offline
+ * and to feed the profiler and coverage views:
+ *
+ * <pre>
+ * TraceFileReader reader = new TraceFileReader(dir, "trace");
+ * Map&lt;String, TemplateStatistics&gt; statistics = reader.getTemplateStatistics();
+ * List&lt;ProfileEntry&gt; profile = reader.getProfileEntries();
+ * reader.addCoverageTo(coverage);
+ * </pre>
+ */
+public class TraceFileReader {
+
+    private final Path directory;
+    private final String prefix;
+
+    public TraceFileReader(Path directory, String prefix) {
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Reads the records of all the trace files in the order in which they have been written.
+     *
+     * @param consumer the record consumer.
+     * @throws IOException if a trace file cannot be read.
+     */
+    public void forEach(Consumer<TraceRecord> consumer) throws IOException {
+        String[] dictionary = readDictionary();
+        for (Path file : getTraceFiles()) {
+            try (FileChannel channel = FileChannel.open(file)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < TraceFormat.HEADER_SIZE || buffer.getInt() != TraceFormat.MAGIC) {
+                    throw new IOException("'" + file + "' is not a Qute trace file");
+                }
+                int version = buffer.getInt();
+                int recordSize = buffer.getInt();
+                if (version != TraceFormat.VERSION || recordSize != TraceFormat.RECORD_SIZE) {
+                    throw new IOException("Unsupported version " + version + " of the trace file '" + file + "'");
+                }
+                buffer.position(TraceFormat.HEADER_SIZE);
+                TraceRecord record;
+                while ((record = TraceFormat.readRecord(buffer, dictionary)) != null) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of each template, sorted by template id.
+     *
+     * @return the statistics of each template.
+     * @throws IOException if a trace file cannot be read.
+     */
+    public Map<String, TemplateStatistics> getTemplateStatistics() throws IOException {
+        Map<String, TemplateStatistics> statistics = new TreeMap<>();
+        forEach(record -> {
+            switch (record.type()) {
+                case END_TEMPLATE -> statistics.computeIfAbsent(record.templateId(), TemplateStatistics::new)
+                        .addRender(record.durationNanos());
+                case AFTER_RESOLVE -> statistics.computeIfAbsent(record.templateId(), TemplateStatistics::new)
+                        .addResolvedNode(record.error());
+                default -> {
+                }
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Returns the resolution latencies aggregated by template id, line and node kind, sorted by total
+     * time, like {@link io.quarkus.qute.debug.agent.profiler.TemplateProfiler#getEntries()}.
+     *
+     * @return the resolution latencies aggregated by template id, line and node kind.
+     * @throws IOException if a trace file cannot be read.
+     */
+    public List<ProfileEntry> getProfileEntries() throws IOException {
+        Map<String, TraceRecord> keys = new HashMap<>();
+        Map<String, LatencyHistogram> histograms = new HashMap<>();
+        forEach(record -> {
+            if (record.type() == TraceRecord.Type.AFTER_RESOLVE && record.durationNanos() >= 0) {
+                String key = record.templateId() + ":" + record.line() + ":" + record.kind();
+                keys.putIfAbsent(key, record);
+                histograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(record.durationNanos());
+            }
+        });
+        List<ProfileEntry> entries = new ArrayList<>(histograms.size());
+        for (var entry : histograms.entrySet()) {
+            TraceRecord record = keys.get(entry.getKey());
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+            entry.getValue().addTo(snapshot);
+            entries.add(new ProfileEntry(record.templateId(), record.line(), record.kind(), snapshot));
+        }
+        entries.sort(Comparator.comparingLong(ProfileEntry::getTotalNanos).reversed());
+        return entries;
+    }
+
+    /**
+     * Marks the lines of the resolved nodes as executed in the given coverage.
+     *
+     * @param coverage the template coverage.
+     * @throws IOException if a trace file cannot be read.
+     */
+    public void addCoverageTo(TemplateCoverage coverage) throws IOException {
+        forEach(record -> {
+            if (record.type() == TraceRecord.Type.BEFORE_RESOLVE) {
+                coverage.addCoveredLine(record.templateId(), record.line());
+            }
+        });
+    }
+
+    private List<Path> getTraceFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix + "-") && name.endsWith(TraceFormat.FILE_EXTENSION);
+            }).sorted().toList();
+        }
+    }
+
+    private String[] readDictionary() throws IOException {
+        List<String> strings = new ArrayList<>();
+        Path file = directory.resolve(prefix + TraceFormat.DICTIONARY_EXTENSION);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                strings.add(input.readUTF());
+            }
+        } catch (EOFException e) {
+            // End of the dictionary
+        }
+        return strings.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,180 @@
+package io.quarkus.qute.debug.agent.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes trace records (see {@link TraceFormat}) in a rolling set of memory-mapped files
+ * {@code <prefix>-00000.qtrace}, {@code <prefix>-00001.qtrace}... of a directory. When the
+ * maximum number of files is reached, the oldest file is deleted.
+ * <p>
+ * The strings added to the dictionary are buffered in memory and written in the
+ * dictionary file when a trace file is rolled and when the writer is closed, so the
+ * render threads don't do any I/O on their first use of a string.
+ */
+public class TraceFileWriter implements Closeable {
+
+    private final Path directory;
+    private final String prefix;
+    private final long fileSize;
+    private final int maxFiles;
+
+    private final Map<String, Integer> dictionary;
+    private final DataOutputStream dictionaryOutput;
+
+    // Strings added to the dictionary which are not yet written in the dictionary file
+    private final ByteArrayOutputStream pendingStrings;
+    private final DataOutputStream pendingOutput;
+
+    private final Deque<Path> files;
+    private int fileIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a writer.
+     *
+     * @param directory the directory of the trace files.
+     * @param prefix the prefix of the trace files.
+     * @param fileSize the maximum size of a trace file in bytes.
+     * @param maxFiles the maximum number of trace files.
+     * @throws IOException if the first file cannot be created.
+     */
+    public TraceFileWriter(Path directory, String prefix, long fileSize, int maxFiles) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        long records = Math.max(1, (fileSize - TraceFormat.HEADER_SIZE) / TraceFormat.RECORD_SIZE);
+        this.fileSize = TraceFormat.HEADER_SIZE + records * TraceFormat.RECORD_SIZE;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.dictionary = new ConcurrentHashMap<>();
+        this.pendingStrings = new ByteArrayOutputStream();
+        this.pendingOutput = new DataOutputStream(pendingStrings);
+        this.files = new ArrayDeque<>();
+        Files.createDirectories(directory);
+        this.dictionaryOutput = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(prefix + TraceFormat.DICTIONARY_EXTENSION))));
+        roll();
+    }
+
+    /**
+     * Returns the index of the given string in the dictionary, the string is added to
+     * the dictionary on its first use.
+     *
+     * @param value the string.
+     * @return the index of the given string or -1 if the string cannot be added to the
+     *         dictionary, in which case the capture is stopped.
+     */
+    public int intern(String value) {
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            return index;
+        }
+        synchronized (dictionary) {
+            index = dictionary.get(value);
+            if (index == null) {
+                if (closed) {
+                    return -1;
+                }
+                try {
+                    pendingOutput.writeUTF(value);
+                } catch (IOException e) {
+                    // Don't give an index to a string which is not in the dictionary file
+                    e.printStackTrace();
+                    closed = true;
+                    return -1;
+                }
+                index = dictionary.size();
+                dictionary.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Writes the records between the position and the limit of the given buffer.
+     *
+     * @param records the records.
+     */
+    public synchronized void write(ByteBuffer records) {
+        if (closed) {
+            return;
+        }
+        try {
+            while (records.hasRemaining()) {
+                if (buffer.remaining() < TraceFormat.RECORD_SIZE) {
+                    roll();
+                }
+                int length = Math.min(records.remaining(), buffer.remaining() / TraceFormat.RECORD_SIZE * TraceFormat.RECORD_SIZE);
+                buffer.put(buffer.position(), records, records.position(), length);
+                buffer.position(buffer.position() + length);
+                records.position(records.position() + length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closed = true;
+        }
+    }
+
+    private void roll() throws IOException {
+        flushDictionary();
+        closeFile();
+        Path file = directory.resolve(String.format("%s-%05d%s", prefix, fileIndex++, TraceFormat.FILE_EXTENSION));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        TraceFormat.writeHeader(buffer);
+        files.addLast(file);
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.removeFirst());
+        }
+    }
+
+    private void flushDictionary() throws IOException {
+        byte[] strings;
+        synchronized (dictionary) {
+            strings = pendingStrings.toByteArray();
+            pendingStrings.reset();
+        }
+        if (strings.length > 0) {
+            dictionaryOutput.write(strings);
+            dictionaryOutput.flush();
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // The capture may have been stopped by an I/O error: the files are still released
+        synchronized (dictionary) {
+            // The strings added from now on would not be written in the dictionary file
+            closed = true;
+        }
+        try {
+            flushDictionary();
+            closeFile();
+        } finally {
+            dictionaryOutput.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.quarkus.qute.debug.agent.capture;
+
+import io.quarkus.qute.TemplateNode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of the trace files written by {@link TraceFileWriter}.
+ * <p>
+ * A trace file starts with a header followed by fixed-width records:
+ *
+ * <pre>
+ * header (32 bytes): magic (int), version (int), record size (int), reserved (int),
+ *                    wall clock in ms (long), System.nanoTime() (long) at the creation of the file
+ * record (40 bytes): timestamp in ns (long), thread id (long), duration in ns or -1 (long),
+ *                    template id index (int), line (int), type (byte), node kind + 1 or 0 (byte),
+ *                    error flag (byte), padding (5 bytes)
+ * </pre>
+ *
+ * The files are preallocated: a record with the type 0 marks the end of the records.
+ * The template ids are interned in a dictionary file which contains the strings in
+ * the order of their index (see {@link java.io.DataOutput#writeUTF(String)}).
+ */
+class TraceFormat {
+
+    static final int MAGIC = 0x51545243; // QTRC
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 40;
+
+    static final String FILE_EXTENSION = ".qtrace";
+    static final String DICTIONARY_EXTENSION = ".strings";
+
+    private static final TraceRecord.Type[] TYPES = TraceRecord.Type.values();
+    private static final TemplateNode.Kind[] KINDS = TemplateNode.Kind.values();
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(RECORD_SIZE);
+        buffer.putInt(0);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(System.nanoTime());
+    }
+
+    static void writeRecord(ByteBuffer buffer, TraceRecord.Type type, long timestamp, long threadId, long durationNanos,
+            int templateIndex, int line, TemplateNode.Kind kind, boolean error) {
+        buffer.putLong(timestamp);
+        buffer.putLong(threadId);
+        buffer.putLong(durationNanos);
+        buffer.putInt(templateIndex);
+        buffer.putInt(line);
+        buffer.put((byte) (type.ordinal() + 1));
+        buffer.put((byte) (kind != null ? kind.ordinal() + 1 : 0));
+        buffer.put((byte) (error ? 1 : 0));
+        buffer.put((byte) 0);
+        buffer.putInt(0);
+    }
+
+    /**
+     * Reads the record at the current position of the given buffer.
+     *
+     * @return the record or null if there is no more record.
+     */
+    static TraceRecord readRecord(ByteBuffer buffer, String[] dictionary) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            return null;
+        }
+        int position = buffer.position();
+        int type = buffer.get(position + 32);
+        if (type <= 0 || type > TYPES.length) {
+            return null;
+        }
+        long timestamp = buffer.getLong();
+        long threadId = buffer.getLong();
+        long durationNanos = buffer.getLong();
+        int templateIndex = buffer.getInt();
+        int line = buffer.getInt();
+        buffer.get();
+        int kind = buffer.get();
+        boolean error = buffer.get() != 0;
+        buffer.position(position + RECORD_SIZE);
+        String templateId = templateIndex >= 0 && templateIndex < dictionary.length ? dictionary[templateIndex] : null;
+        return new TraceRecord(TYPES[type - 1], timestamp, threadId, templateId, line, kind > 0 ? KINDS[kind - 1] : null,
+                durationNanos, error);
+    }
+}
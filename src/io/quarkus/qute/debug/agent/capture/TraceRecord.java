@@ -0,0 +1,26 @@
+package io.quarkus.qute.debug.agent.capture;
+
+import io.quarkus.qute.TemplateNode;
+
+/**
+ * Trace event of a template render.
+ *
+ * @param type the event type.
+ * @param timestamp the {@link System#nanoTime()} of the event.
+ * @param threadId the id of the render thread.
+ * @param templateId the template id.
+ * @param line the line of the template node, 0 for the template events.
+ * @param kind the kind of the template node, null for the template events.
+ * @param durationNanos the duration of the render / resolution for the end events, -1 otherwise.
+ * @param error true if the resolution of the node has failed.
+ */
+public record TraceRecord(Type type, long timestamp, long threadId, String templateId, int line, TemplateNode.Kind kind,
+        long durationNanos, boolean error) {
+
+    public enum Type {
+        START_TEMPLATE,
+        END_TEMPLATE,
+        BEFORE_RESOLVE,
+        AFTER_RESOLVE
+    }
+}
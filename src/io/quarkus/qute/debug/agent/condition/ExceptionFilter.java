@@ -0,0 +1,77 @@
+package io.quarkus.qute.debug.agent.condition;
+
+import io.quarkus.qute.TemplateException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Filter of the exception breakpoints, which selects the template resolution errors
+ * which suspend the render thread.
+ */
+public class ExceptionFilter {
+
+    /**
+     * Filter which selects all resolution errors.
+     */
+    public static final String ALL = "all";
+
+    /**
+     * Filter which selects the unresolved properties / namespaces (NOT_FOUND).
+     */
+    public static final String NOT_FOUND = "notFound";
+
+    private final boolean all;
+
+    private ExceptionFilter(boolean all) {
+        this.all = all;
+    }
+
+    /**
+     * Returns the filter of the given DAP exception filter ids, or null if no filter is enabled.
+     *
+     * @param filters the DAP exception filter ids.
+     * @return the filter of the given DAP exception filter ids, or null if no filter is enabled.
+     */
+    public static ExceptionFilter create(String[] filters) {
+        if (filters == null) {
+            return null;
+        }
+        // The client may send duplicated or null ids
+        Set<String> ids = new HashSet<>(Arrays.asList(filters));
+        ids.removeIf(Objects::isNull);
+        if (ids.contains(ALL)) {
+            return new ExceptionFilter(true);
+        }
+        if (ids.contains(NOT_FOUND)) {
+            return new ExceptionFilter(false);
+        }
+        return null;
+    }
+
+    public boolean matches(Throwable error) {
+        return all || isNotFound(error);
+    }
+
+    private static boolean isNotFound(Throwable error) {
+        return error instanceof TemplateException templateException
+                && templateException.getCodeName().map(name -> name.endsWith("NOT_FOUND")).orElse(false);
+    }
+
+    /**
+     * Returns the cause of the given error if it wraps the error of an asynchronous resolution.
+     *
+     * @param error the resolution error.
+     * @return the resolution error without the wrappers of the asynchronous resolution.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
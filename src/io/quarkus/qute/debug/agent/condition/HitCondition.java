@@ -0,0 +1,162 @@
+package io.quarkus.qute.debug.agent.condition;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DAP hit condition of a breakpoint, which controls how many hits of the breakpoint are
+ * ignored. The supported forms are:
+ * <ul>
+ * <li>{@code N}, {@code == N}: the N-th hit,</li>
+ * <li>{@code > N}, {@code >= N}, {@code < N}, {@code <= N}: the hits after / before the N-th hit,</li>
+ * <li>{@code % N}, {@code % N == 0}: every N hits,</li>
+ * <li>{@code N/s}, {@code at most N per second}: at most N hits per second.</li>
+ * </ul>
+ * The hit count is incremented for each hit, before the condition of the breakpoint is evaluated.
+ */
+public abstract class HitCondition {
+
+    private static final Pattern COMPARISON = Pattern.compile("(==|>=|<=|>|<)?\\s*(\\d+)");
+    private static final Pattern MODULO = Pattern.compile("%\\s*(\\d+)(\\s*==\\s*0)?");
+    private static final Pattern RATE = Pattern.compile("(?:at\\s+most\\s+)?(\\d+)\\s*(?:/\\s*s|per\\s+second)");
+
+    /**
+     * Parses the given hit condition.
+     *
+     * @param hitCondition the hit condition.
+     * @return the parsed hit condition.
+     * @throws IllegalArgumentException if the hit condition is not valid.
+     */
+    public static HitCondition parse(String hitCondition) {
+        String s = hitCondition.trim();
+        Matcher matcher = RATE.matcher(s);
+        if (matcher.matches()) {
+            return new RateHitCondition(new RateLimiter((int) Math.min(Integer.MAX_VALUE, parseCount(matcher.group(1), hitCondition))));
+        }
+        matcher = MODULO.matcher(s);
+        if (matcher.matches()) {
+            long modulo = parseCount(matcher.group(1), hitCondition);
+            if (modulo == 0) {
+                throw new IllegalArgumentException("Invalid hit condition '" + hitCondition + "': modulo by zero.");
+            }
+            return new ExactHitCondition(count -> count % modulo == 0);
+        }
+        matcher = COMPARISON.matcher(s);
+        if (matcher.matches()) {
+            long n = parseCount(matcher.group(2), hitCondition);
+            String operator = matcher.group(1) != null ? matcher.group(1) : "==";
+            return switch (operator) {
+                case ">=" -> new ThresholdHitCondition(n, true);
+                case ">" -> new ThresholdHitCondition(n + 1, true);
+                case "<=" -> new ThresholdHitCondition(n + 1, false);
+                case "<" -> new ThresholdHitCondition(n, false);
+                default -> new ExactHitCondition(count -> count == n);
+            };
+        }
+        throw new IllegalArgumentException("Invalid hit condition '" + hitCondition
+                + "', expected 'N', '>= N', '% N' or 'N/s'.");
+    }
+
+    private static long parseCount(String count, String hitCondition) {
+        try {
+            return Long.parseLong(count);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid hit condition '" + hitCondition + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts a hit of the breakpoint and returns true if the breakpoint must stop.
+     *
+     * @return true if the breakpoint must stop for this hit.
+     */
+    public abstract boolean test();
+
+    /**
+     * Returns the number of hits of the breakpoint.
+     *
+     * @return the number of hits of the breakpoint.
+     */
+    public abstract long getHitCount();
+
+    /**
+     * Hit condition which compares the hit count with a threshold. The hits are counted with a
+     * {@link LongAdder} and once the threshold is passed the count is no longer needed.
+     */
+    private static class ThresholdHitCondition extends HitCondition {
+
+        private final LongAdder hits = new LongAdder();
+        private final long threshold;
+        private final boolean after;
+        private volatile boolean passed;
+
+        ThresholdHitCondition(long threshold, boolean after) {
+            this.threshold = threshold;
+            this.after = after;
+        }
+
+        @Override
+        public boolean test() {
+            hits.increment();
+            if (!passed && hits.sum() >= threshold) {
+                passed = true;
+            }
+            return passed == after;
+        }
+
+        @Override
+        public long getHitCount() {
+            return hits.sum();
+        }
+    }
+
+    /**
+     * Hit condition which needs the exact ordinal of each hit (N-th hit, every N hits).
+     */
+    private static class ExactHitCondition extends HitCondition {
+
+        private final AtomicLong hits = new AtomicLong();
+        private final LongPredicate predicate;
+
+        ExactHitCondition(LongPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test() {
+            return predicate.test(hits.incrementAndGet());
+        }
+
+        @Override
+        public long getHitCount() {
+            return hits.get();
+        }
+    }
+
+    /**
+     * Hit condition which allows at most N hits per second.
+     */
+    private static class RateHitCondition extends HitCondition {
+
+        private final LongAdder hits = new LongAdder();
+        private final RateLimiter rateLimiter;
+
+        RateHitCondition(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
+
+        @Override
+        public boolean test() {
+            hits.increment();
+            return rateLimiter.tryAcquire();
+        }
+
+        @Override
+        public long getHitCount() {
+            return hits.sum();
+        }
+    }
+}
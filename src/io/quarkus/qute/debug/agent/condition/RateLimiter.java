@@ -0,0 +1,46 @@
+package io.quarkus.qute.debug.agent.condition;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter which allows at most N permits per one second window.
+ * <p>
+ * The window is reset by the first thread which acquires a permit after its end, the
+ * permits acquired concurrently during the reset may be counted in the previous window.
+ */
+public class RateLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int permitsPerSecond;
+
+    private final AtomicLong windowStart;
+
+    private final AtomicLong permits;
+
+    public RateLimiter(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.windowStart = new AtomicLong(System.nanoTime());
+        this.permits = new AtomicLong();
+    }
+
+    public int getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Acquires a permit if the limit of the current window is not reached.
+     *
+     * @return true if a permit has been acquired and false otherwise.
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            permits.set(0);
+        }
+        // Avoid incrementing the counter once the limit is reached
+        return permits.get() < permitsPerSecond && permits.incrementAndGet() <= permitsPerSecond;
+    }
+}
@@ -0,0 +1,161 @@
+package io.quarkus.qute.debug.agent.coverage;
+
+import io.quarkus.qute.Engine;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Atomic bitset of the executed lines of a template content, with its instrumented
+ * lines.
+ * <p>
+ * The same content can be parsed by several engines (several engines in the same
+ * application, tests...): the hits of all its versions (engine and generated id) are
+ * merged. Only the line numbers are kept and the engines are weakly referenced, so that
+ * the engines discarded by a reload can be garbage collected.
+ */
+class CoveredLines {
+
+    private static final Version[] NO_VERSIONS = new Version[0];
+
+    private final int[] instrumentedLines;
+
+    private volatile Version[] versions;
+
+    private volatile AtomicLongArray words;
+
+    /**
+     * @param engine the engine which has parsed the template version or null if unknown.
+     * @param generatedId the generated id of the template version in its engine or null if unknown.
+     * @param instrumentedLines the instrumented lines of the template version.
+     */
+    CoveredLines(Engine engine, String generatedId, int[] instrumentedLines) {
+        this.instrumentedLines = instrumentedLines;
+        this.versions = NO_VERSIONS;
+        this.words = new AtomicLongArray(2);
+        addVersion(engine, generatedId);
+    }
+
+    /**
+     * Returns true if these lines are recorded for the given template version.
+     *
+     * @param engine the engine which has parsed the template version.
+     * @param generatedId the generated id of the template version in its engine.
+     * @return true if these lines are recorded for the given template version.
+     */
+    boolean isVersion(Engine engine, String generatedId) {
+        for (Version version : versions) {
+            if (version.is(engine, generatedId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the lines of the given template version, which has the same content, in these lines.
+     *
+     * @param engine the engine which has parsed the template version.
+     * @param generatedId the generated id of the template version in its engine.
+     */
+    synchronized void addVersion(Engine engine, String generatedId) {
+        List<Version> versions = new ArrayList<>(this.versions.length + 1);
+        for (Version version : this.versions) {
+            // Forget the versions of the engines which have been garbage collected
+            if (version.nullEngine || version.engine.get() != null) {
+                versions.add(version);
+            }
+        }
+        versions.add(new Version(engine, generatedId));
+        this.versions = versions.toArray(NO_VERSIONS);
+    }
+
+    int[] getInstrumentedLines() {
+        return instrumentedLines;
+    }
+
+    void set(int line) {
+        if (line < 0) {
+            return;
+        }
+        int index = line >>> 6;
+        long mask = 1L << line;
+        AtomicLongArray words = this.words;
+        while (true) {
+            if (index >= words.length()) {
+                words = grow(index);
+            }
+            if ((words.get(index) & mask) == 0) {
+                words.getAndAccumulate(index, mask, (current, bit) -> current | bit);
+            }
+            AtomicLongArray current = this.words;
+            if (current == words) {
+                return;
+            }
+            // The bitset has been grown by another thread, set the line in the new words too
+            words = current;
+        }
+    }
+
+    boolean get(int line) {
+        if (line < 0) {
+            return false;
+        }
+        int index = line >>> 6;
+        AtomicLongArray words = this.words;
+        return index < words.length() && (words.get(index) & (1L << line)) != 0;
+    }
+
+    void addTo(Collection<Integer> lines) {
+        AtomicLongArray words = this.words;
+        for (int i = 0; i < words.length(); i++) {
+            long bits = words.get(i);
+            while (bits != 0) {
+                lines.add(i * 64 + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    private synchronized AtomicLongArray grow(int index) {
+        AtomicLongArray words = this.words;
+        if (index < words.length()) {
+            return words;
+        }
+        AtomicLongArray newWords = new AtomicLongArray(Math.max(index + 1, words.length() * 2));
+        // Publish the new words before copying the old ones: a line set in the old words
+        // after the copy is set again in the new words by the setter (see set).
+        this.words = newWords;
+        for (int i = 0; i < words.length(); i++) {
+            long bits = words.get(i);
+            newWords.getAndAccumulate(i, bits, (current, bit) -> current | bit);
+        }
+        return newWords;
+    }
+
+    /**
+     * A version of the template: the engine which has parsed it (weakly referenced) and its generated id.
+     */
+    private static class Version {
+
+        private final WeakReference<Engine> engine;
+
+        private final boolean nullEngine;
+
+        private final String generatedId;
+
+        Version(Engine engine, String generatedId) {
+            this.engine = new WeakReference<>(engine);
+            this.nullEngine = engine == null;
+            this.generatedId = generatedId;
+        }
+
+        boolean is(Engine engine, String generatedId) {
+            return this.engine.get() == engine
+                    && (this.generatedId == null ? generatedId == null : this.generatedId.equals(generatedId));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.quarkus.qute.debug.agent.coverage;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.debug.agent.SourceTemplateRegistry;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TraceListenerAdapter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trace listener which records the executed lines of the templates in an atomic
+ * bitset per template id, to export them in the LCOV format:
+ *
+ * <pre>
+ * Engine engine = Engine.builder()...build();
+ * TemplateCoverage coverage = new TemplateCoverage();
+ * engine.addTraceListener(coverage);
+ * ...
+ * coverage.writeLcov(Paths.get("target/qute.lcov"));
+ * </pre>
+ * <p>
+ * It doesn't need the debugger (no stack frame, no debuggee thread, no DAP
+ * client): a node resolution only costs a map lookup and a bit test once the
+ * line is covered.
+ * <p>
+ * A template content is identified by its instrumented lines: when a template is
+ * rendered by several engines with the same content, the executed lines of all the
+ * engines are merged, and when it is rendered by an engine with a new content (dev mode
+ * reload...), its recorded lines are replaced by the lines of the new content.
+ */
+public class TemplateCoverage extends TraceListenerAdapter {
+
+    private final Map<String /* template id */, CoveredLines> templates;
+
+    private final SourceTemplateRegistry sourceTemplateRegistry;
+
+    // Instrumented lines of the parsed templates, computed once per template version
+    private final Map<Template, int[]> instrumentedLines;
+
+    public TemplateCoverage() {
+        this(new SourceTemplateRegistry());
+    }
+
+    public TemplateCoverage(SourceTemplateRegistry sourceTemplateRegistry) {
+        this.templates = new ConcurrentHashMap<>();
+        this.sourceTemplateRegistry = sourceTemplateRegistry;
+        this.instrumentedLines = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    @Override
+    public void onBeforeResolve(ResolveEvent event) {
+        TemplateNode.Origin origin = event.getTemplateNode().getOrigin();
+        String templateId = origin.getTemplateId();
+        CoveredLines lines = templates.get(templateId);
+        if (lines == null || !lines.isVersion(event.getEngine(), origin.getTemplateGeneratedId())) {
+            // First render of the template by this engine or of a new version of the template (reloaded engine)
+            lines = templates.compute(templateId, (k, current) -> newVersion(current, event.getEngine(), templateId,
+                    origin.getTemplateGeneratedId()));
+        }
+        lines.set(origin.getLine());
+    }
+
+    /**
+     * Marks the given line of the given template as executed, e.g. from a trace captured offline
+     * (see {@link io.quarkus.qute.debug.agent.capture.TraceFileReader}). Without engine, the
+     * instrumented lines of the template are its executed lines.
+     *
+     * @param templateId the template id.
+     * @param line the line.
+     */
+    public void addCoveredLine(String templateId, int line) {
+        templates.computeIfAbsent(templateId, k -> new CoveredLines(null, null, new int[0])).set(line);
+    }
+
+    /**
+     * Returns true if the given line of the given template has been executed.
+     *
+     * @param templateId the template id.
+     * @param line the line.
+     * @return true if the given line of the given template has been executed.
+     */
+    public boolean isCovered(String templateId, int line) {
+        CoveredLines lines = templates.get(templateId);
+        return lines != null && lines.get(line);
+    }
+
+    /**
+     * Writes the coverage in the LCOV format.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeLcov(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writeLcov(writer);
+        }
+    }
+
+    /**
+     * Writes the coverage in the LCOV format.
+     * <p>
+     * The instrumented lines of a template are the lines of its sections,
+     * expressions and non-blank texts.
+     *
+     * @param writer the writer.
+     * @throws IOException if the coverage cannot be written.
+     */
+    public void writeLcov(Writer writer) throws IOException {
+        for (var entry : new TreeMap<>(templates).entrySet()) {
+            String templateId = entry.getKey();
+            CoveredLines coveredLines = entry.getValue();
+            TreeSet<Integer> lines = getInstrumentedLines(templateId, coveredLines);
+            int hit = 0;
+            writer.append("TN:\n");
+            writer.append("SF:").append(sourceTemplateRegistry.getSourcePath(templateId)).append('\n');
+            for (int line : lines) {
+                boolean covered = coveredLines.get(line);
+                if (covered) {
+                    hit++;
+                }
+                writer.append("DA:").append(Integer.toString(line)).append(',').append(covered ? "1" : "0").append('\n');
+            }
+            writer.append("LF:").append(Integer.toString(lines.size())).append('\n');
+            writer.append("LH:").append(Integer.toString(hit)).append('\n');
+            writer.append("end_of_record\n");
+        }
+        writer.flush();
+    }
+
+    private static TreeSet<Integer> getInstrumentedLines(String templateId, CoveredLines coveredLines) {
+        TreeSet<Integer> lines = new TreeSet<>();
+        coveredLines.addTo(lines);
+        for (int line : coveredLines.getInstrumentedLines()) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private CoveredLines newVersion(CoveredLines current, Engine engine, String templateId, String generatedId) {
+        if (current != null && current.isVersion(engine, generatedId)) {
+            // Created by another thread
+            return current;
+        }
+        int[] lines = getInstrumentedLines(engine.getTemplate(templateId), generatedId);
+        if (current != null && Arrays.equals(current.getInstrumentedLines(), lines)) {
+            // Same content parsed by another engine: merge the executed lines
+            current.addVersion(engine, generatedId);
+            return current;
+        }
+        return new CoveredLines(engine, generatedId, lines);
+    }
+
+    /**
+     * Returns the lines of the sections, expressions and non-blank texts of the given template
+     * if it is the given version.
+     */
+    private int[] getInstrumentedLines(Template template, String generatedId) {
+        if (template == null || !template.getGeneratedId().equals(generatedId)) {
+            return new int[0];
+        }
+        return instrumentedLines.computeIfAbsent(template, TemplateCoverage::findInstrumentedLines);
+    }
+
+    private static int[] findInstrumentedLines(Template template) {
+        return template.findNodes(node -> !node.isText() || !node.asText().getValue().isBlank()).stream()
+                .mapToInt(node -> node.getOrigin().getLine())
+                .filter(line -> line > 0)
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Removes the recorded lines.
+     */
+    public void reset() {
+        templates.clear();
+        instrumentedLines.clear();
+    }
+}
@@ -0,0 +1,222 @@
+package io.quarkus.qute.debug.agent.jfr;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.trace.BaseEvent;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+import io.quarkus.qute.trace.TraceListener;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * {@link TraceListener} which emits JDK Flight Recorder events for the template
+ * renders ({@code io.quarkus.qute.TemplateRender}) and the node resolutions
+ * ({@code io.quarkus.qute.NodeResolve}).
+ * <p>
+ * The JFR events are only created when their event type is enabled by a
+ * running recording. Use {@link #install(Engine)} to register the listener on
+ * an engine only while such a recording is running, so that the engine doesn't
+ * pay for the trace events otherwise:
+ *
+ * <pre>
+ * JfrTraceListener.Installation installation = JfrTraceListener.install(engine);
+ * ...
+ * installation.close();
+ * </pre>
+ */
+public class JfrTraceListener implements TraceListener {
+
+    /**
+     * Name of the JFR event of the template renders.
+     */
+    public static final String TEMPLATE_RENDER_EVENT = TemplateRenderJfrEvent.NAME;
+
+    /**
+     * Name of the JFR event of the node resolutions.
+     */
+    public static final String NODE_RESOLVE_EVENT = NodeResolveJfrEvent.NAME;
+
+    private static final EventType TEMPLATE_RENDER_TYPE = EventType.getEventType(TemplateRenderJfrEvent.class);
+
+    private static final EventType NODE_RESOLVE_TYPE = EventType.getEventType(NodeResolveJfrEvent.class);
+
+    private final ThreadLocal<PendingEvents> pendingEvents = ThreadLocal.withInitial(PendingEvents::new);
+
+    /**
+     * Creates a JFR trace listener and registers it on the given engine each time a
+     * recording enables the Qute events.
+     * <p>
+     * The engine is weakly referenced: the installation is removed from the flight
+     * recorder at the next recording state change once the engine has been garbage
+     * collected, or when it is closed.
+     *
+     * @param engine the engine to trace.
+     * @return the installation, to close to stop tracing the engine.
+     */
+    public static Installation install(Engine engine) {
+        Installation installation = new Installation(engine, new JfrTraceListener());
+        FlightRecorder.addListener(installation);
+        // A recording may already be running
+        installation.recordingStateChanged(null);
+        return installation;
+    }
+
+    /**
+     * Registration of a JFR trace listener on an engine while a recording enables the Qute events.
+     */
+    public static class Installation implements FlightRecorderListener, AutoCloseable {
+
+        private final WeakReference<Engine> engine;
+        private final JfrTraceListener listener;
+        private boolean registered;
+        private boolean closed;
+
+        private Installation(Engine engine, JfrTraceListener listener) {
+            this.engine = new WeakReference<>(engine);
+            this.listener = listener;
+        }
+
+        public JfrTraceListener getListener() {
+            return listener;
+        }
+
+        @Override
+        public synchronized void recordingStateChanged(Recording recording) {
+            Engine engine = this.engine.get();
+            if (engine == null) {
+                // The engine has been garbage collected
+                close();
+                return;
+            }
+            boolean enabled = !closed && isEnabled();
+            if (enabled && !registered) {
+                engine.addTraceListener(listener);
+            } else if (!enabled && registered) {
+                engine.removeTraceListener(listener);
+            }
+            registered = enabled;
+        }
+
+        /**
+         * Unregisters the trace listener from the engine and stops listening to the recordings.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            FlightRecorder.removeListener(this);
+            Engine engine = this.engine.get();
+            if (registered && engine != null) {
+                engine.removeTraceListener(listener);
+            }
+            registered = false;
+        }
+    }
+
+    /**
+     * Returns true if a running recording enables one of the Qute events.
+     *
+     * @return true if a running recording enables one of the Qute events.
+     */
+    public static boolean isEnabled() {
+        return TEMPLATE_RENDER_TYPE.isEnabled() || NODE_RESOLVE_TYPE.isEnabled();
+    }
+
+    @Override
+    public void onStartTemplate(TemplateEvent event) {
+        if (!TEMPLATE_RENDER_TYPE.isEnabled()) {
+            return;
+        }
+        TemplateRenderJfrEvent jfrEvent = new TemplateRenderJfrEvent();
+        jfrEvent.begin();
+        pendingEvents.get().push(event, jfrEvent);
+    }
+
+    @Override
+    public void onBeforeResolve(ResolveEvent event) {
+        if (!NODE_RESOLVE_TYPE.isEnabled()) {
+            return;
+        }
+        NodeResolveJfrEvent jfrEvent = new NodeResolveJfrEvent();
+        jfrEvent.begin();
+        pendingEvents.get().push(event, jfrEvent);
+    }
+
+    @Override
+    public void onAfterResolve(ResolveEvent event) {
+        if (!NODE_RESOLVE_TYPE.isEnabled()) {
+            return;
+        }
+        if (pendingEvents.get().pop(event) instanceof NodeResolveJfrEvent jfrEvent) {
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                TemplateNode node = event.getTemplateNode();
+                TemplateNode.Origin origin = node.getOrigin();
+                jfrEvent.templateId = origin.getTemplateId();
+                jfrEvent.line = origin.getLine();
+                jfrEvent.nodeKind = node.kind().name();
+                jfrEvent.error = event.getError() != null;
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public void onEndTemplate(TemplateEvent event) {
+        if (!TEMPLATE_RENDER_TYPE.isEnabled()) {
+            return;
+        }
+        if (pendingEvents.get().pop(event) instanceof TemplateRenderJfrEvent jfrEvent) {
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.templateId = event.getTemplateInstance().getTemplate().getId();
+                jfrEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * JFR events which have begun on a thread and which wait for their end trace event.
+     * <p>
+     * An end trace event which is received by another thread (asynchronous resolution) is ignored.
+     */
+    private static class PendingEvents {
+
+        private static final int MAX_DEPTH = 256;
+
+        private final BaseEvent[] traceEvents = new BaseEvent[MAX_DEPTH];
+        private final Event[] jfrEvents = new Event[MAX_DEPTH];
+        private int size;
+
+        void push(BaseEvent traceEvent, Event jfrEvent) {
+            if (size < MAX_DEPTH) {
+                traceEvents[size] = traceEvent;
+                jfrEvents[size] = jfrEvent;
+                size++;
+            }
+        }
+
+        Event pop(BaseEvent traceEvent) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (traceEvents[i] == traceEvent) {
+                    Event jfrEvent = jfrEvents[i];
+                    for (int j = i; j < size; j++) {
+                        traceEvents[j] = null;
+                        jfrEvents[j] = null;
+                    }
+                    size = i;
+                    return jfrEvent;
+                }
+            }
+            return null;
+        }
+    }
+}
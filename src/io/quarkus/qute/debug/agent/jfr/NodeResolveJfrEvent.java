@@ -0,0 +1,34 @@
+package io.quarkus.qute.debug.agent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted for the resolution of a Qute template node.
+ */
+@Name(NodeResolveJfrEvent.NAME)
+@Label("Qute Node Resolve")
+@Description("Resolution of a Qute template node (section, expression, text...)")
+@Category("Qute")
+@StackTrace(false)
+class NodeResolveJfrEvent extends Event {
+
+    static final String NAME = "io.quarkus.qute.NodeResolve";
+
+    @Label("Template Id")
+    String templateId;
+
+    @Label("Line")
+    int line;
+
+    @Label("Node Kind")
+    String nodeKind;
+
+    @Label("Error")
+    boolean error;
+
+}
@@ -0,0 +1,25 @@
+package io.quarkus.qute.debug.agent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event emitted for the render of a Qute template.
+ */
+@Name(TemplateRenderJfrEvent.NAME)
+@Label("Qute Template Render")
+@Description("Render of a Qute template")
+@Category("Qute")
+@StackTrace(false)
+class TemplateRenderJfrEvent extends Event {
+
+    static final String NAME = "io.quarkus.qute.TemplateRender";
+
+    @Label("Template Id")
+    String templateId;
+
+}
@@ -0,0 +1,124 @@
+package io.quarkus.qute.debug.agent.logpoint;
+
+import io.quarkus.qute.debug.agent.RemoteStackFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed DAP log message of a logpoint: the expressions within {} are interpolated,
+ * '\{' and '\}' are literal braces.
+ * <p>
+ * The expression values are captured on the render thread (see {@link #capture(RemoteStackFrame)})
+ * and the message is formatted later on the logpoint output thread (see {@link #format(Object[])}).
+ */
+public class LogMessage {
+
+    private static final long EVALUATION_TIMEOUT = 1000;
+
+    // Literal texts, texts[i] is followed by expressions[i]
+    private final String[] texts;
+
+    private final String[] expressions;
+
+    private LogMessage(List<String> texts, List<String> expressions) {
+        this.texts = texts.toArray(new String[0]);
+        this.expressions = expressions.toArray(new String[0]);
+    }
+
+    public static LogMessage parse(String logMessage) {
+        List<String> texts = new ArrayList<>();
+        List<String> expressions = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        int length = logMessage.length();
+        while (i < length) {
+            char c = logMessage.charAt(i);
+            if (c == '\\' && i + 1 < length && (logMessage.charAt(i + 1) == '{' || logMessage.charAt(i + 1) == '}')) {
+                text.append(logMessage.charAt(i + 1));
+                i += 2;
+            } else if (c == '{') {
+                int end = findExpressionEnd(logMessage, i + 1);
+                if (end == -1) {
+                    // Unclosed brace, keep it as text
+                    text.append(logMessage, i, length);
+                    break;
+                }
+                texts.add(text.toString());
+                text.setLength(0);
+                expressions.add(logMessage.substring(i + 1, end).trim());
+                i = end + 1;
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        texts.add(text.toString());
+        return new LogMessage(texts, expressions);
+    }
+
+    private static int findExpressionEnd(String logMessage, int start) {
+        int depth = 0;
+        for (int i = start; i < logMessage.length(); i++) {
+            char c = logMessage.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Starts the evaluation of the expressions of the message on the render thread.
+     *
+     * @param frame the stack frame of the logpoint.
+     * @return the evaluations of the expressions of the message.
+     */
+    public Object[] capture(RemoteStackFrame frame) {
+        Object[] values = new Object[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            try {
+                values[i] = frame.evaluate(expressions[i]);
+            } catch (Exception e) {
+                values[i] = e;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Formats the message with the captured evaluations.
+     *
+     * @param values the evaluations returned by {@link #capture(RemoteStackFrame)}.
+     * @return the formatted message.
+     */
+    public String format(Object[] values) {
+        StringBuilder message = new StringBuilder(texts[0]);
+        for (int i = 0; i < values.length; i++) {
+            message.append(toString(values[i]));
+            message.append(texts[i + 1]);
+        }
+        return message.toString();
+    }
+
+    private static String toString(Object value) {
+        try {
+            if (value instanceof CompletionStage<?> evaluation) {
+                value = evaluation.toCompletableFuture().get(EVALUATION_TIMEOUT, TimeUnit.MILLISECONDS);
+            } else if (value instanceof Exception e) {
+                throw e;
+            }
+            return String.valueOf(value);
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return "<error: " + cause.getMessage() + ">";
+        }
+    }
+}
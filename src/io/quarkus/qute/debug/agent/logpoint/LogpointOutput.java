@@ -0,0 +1,119 @@
+package io.quarkus.qute.debug.agent.logpoint;
+
+import org.eclipse.lsp4j.debug.OutputEventArguments;
+import org.eclipse.lsp4j.debug.OutputEventArgumentsCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Formats the messages of the logpoints on a background thread and sends them in
+ * batches: all the messages which are pending when the thread wakes up are sent
+ * in one output event.
+ * <p>
+ * The render threads never block: when the queue is full, the message is dropped
+ * and reported with the next batch.
+ * <p>
+ * The background thread is started by the first message and stopped by {@link #stop()}
+ * when the debugging session ends.
+ */
+public class LogpointOutput {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final BlockingQueue<PendingMessage> queue;
+
+    private final Consumer<OutputEventArguments> output;
+
+    private final AtomicLong droppedMessages;
+
+    private volatile Thread thread;
+
+    public LogpointOutput(Consumer<OutputEventArguments> output) {
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.output = output;
+        this.droppedMessages = new AtomicLong();
+    }
+
+    /**
+     * Queues a message to format and send.
+     *
+     * @param message the log message.
+     * @param values the evaluations captured for the message.
+     */
+    public void log(LogMessage message, Object[] values) {
+        if (thread == null) {
+            startIfNeeded();
+        }
+        if (!queue.offer(new PendingMessage(message, values))) {
+            droppedMessages.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a message which has been dropped by the rate limit of its logpoint.
+     */
+    public void drop() {
+        droppedMessages.incrementAndGet();
+    }
+
+    private synchronized void startIfNeeded() {
+        if (thread == null) {
+            thread = new Thread(this::run, "Qute logpoint output");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the background thread and discards the pending messages.
+     */
+    public synchronized void stop() {
+        Thread thread = this.thread;
+        if (thread != null) {
+            this.thread = null;
+            thread.interrupt();
+        }
+        queue.clear();
+        droppedMessages.set(0);
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        StringBuilder text = new StringBuilder();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            for (PendingMessage pending : batch) {
+                text.append(pending.message().format(pending.values())).append(System.lineSeparator());
+            }
+            long dropped = droppedMessages.getAndSet(0);
+            if (dropped > 0) {
+                text.append(dropped).append(" logpoint message(s) dropped.").append(System.lineSeparator());
+            }
+            OutputEventArguments args = new OutputEventArguments();
+            args.setOutput(text.toString());
+            args.setCategory(OutputEventArgumentsCategory.CONSOLE);
+            try {
+                output.accept(args);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            batch.clear();
+            text.setLength(0);
+        }
+    }
+
+    private record PendingMessage(LogMessage message, Object[] values) {
+    }
+}
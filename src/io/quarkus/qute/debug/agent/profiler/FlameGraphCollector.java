@@ -0,0 +1,277 @@
+package io.quarkus.qute.debug.agent.profiler;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.trace.BaseEvent;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collector which builds the stacks of sections ({@code #include}, user tags,
+ * {@code #for}...) and expressions of the sampled renders and accumulates their
+ * self time in a trie, to export them in the collapsed stack format used by
+ * flame graph tools (the total time of a frame is the sum of the self times of
+ * its stacks):
+ *
+ * <pre>
+ * hello.qute;{#for} hello.qute:3;{item.name} hello.qute:4 1234
+ * </pre>
+ * <p>
+ * The value of a collapsed stack is its self time in microseconds. Text nodes
+ * are not part of the stacks, their time is counted in the self time of their
+ * parent.
+ * <p>
+ * Only one render out of {@code sampleRate} is traced to bound the overhead.
+ */
+public class FlameGraphCollector {
+
+    private volatile boolean enabled;
+
+    private volatile int sampleRate;
+
+    // Incremented each time the collector is enabled, to discard the stacks of the renders
+    // which were in progress when it has been disabled (their end events have been skipped)
+    private volatile int generation;
+
+    private final TrieNode root;
+
+    private final ThreadLocal<SampleStack> stacks;
+
+    public FlameGraphCollector() {
+        this.sampleRate = 1;
+        this.root = new TrieNode(null);
+        this.stacks = ThreadLocal.withInitial(SampleStack::new);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            generation++;
+        }
+        this.enabled = enabled;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the sample rate.
+     *
+     * @param sampleRate 1 to trace all renders, N to trace one render out of N.
+     */
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public void onStartTemplate(TemplateEvent event) {
+        SampleStack stack = stacks.get();
+        int generation = this.generation;
+        if (stack.generation != generation) {
+            stack.clear();
+            stack.generation = generation;
+        }
+        int sampleRate = this.sampleRate;
+        if (stack.size == 0) {
+            stack.sampled = sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        }
+        if (stack.sampled) {
+            String templateId = event.getTemplateInstance().getTemplate().getId();
+            stack.push(event, stack.top(root).getChild(templateId), System.nanoTime());
+        }
+    }
+
+    public void onBeforeResolve(ResolveEvent event) {
+        SampleStack stack = stacks.get();
+        if (!stack.isSampled(generation) || stack.size == 0) {
+            return;
+        }
+        TemplateNode node = event.getTemplateNode();
+        if (node.isText()) {
+            return;
+        }
+        stack.push(event, stack.top(root).getChild(node), System.nanoTime());
+    }
+
+    public void onAfterResolve(ResolveEvent event) {
+        SampleStack stack = stacks.get();
+        if (stack.isSampled(generation) && !event.getTemplateNode().isText()) {
+            stack.pop(event, System.nanoTime());
+        }
+    }
+
+    public void onEndTemplate(TemplateEvent event) {
+        SampleStack stack = stacks.get();
+        if (stack.isSampled(generation)) {
+            stack.pop(event, System.nanoTime());
+        }
+    }
+
+    /**
+     * Writes the collected stacks in the collapsed stack format.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void export(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            export(writer);
+        }
+    }
+
+    /**
+     * Writes the collected stacks in the collapsed stack format.
+     *
+     * @param writer the writer.
+     * @throws IOException if the stacks cannot be written.
+     */
+    public void export(Writer writer) throws IOException {
+        StringBuilder path = new StringBuilder();
+        for (TrieNode child : root.children.values()) {
+            export(child, path, writer);
+        }
+        writer.flush();
+    }
+
+    private static void export(TrieNode node, StringBuilder path, Writer writer) throws IOException {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        path.append(node.getLabel());
+        long self = TimeUnit.NANOSECONDS.toMicros(node.selfNanos.sum());
+        if (self > 0) {
+            writer.append(path).append(' ').append(Long.toString(self)).append('\n');
+        }
+        for (TrieNode child : node.children.values()) {
+            export(child, path, writer);
+        }
+        path.setLength(length);
+    }
+
+    /**
+     * Removes all collected stacks.
+     */
+    public void reset() {
+        root.children.clear();
+    }
+
+    /**
+     * Node of the trie of stacks. A child is identified by the template id of a
+     * render or by the template node of a section / expression.
+     */
+    private static class TrieNode {
+
+        private final Object key;
+        private final Map<Object, TrieNode> children = new ConcurrentHashMap<>(4);
+        private final LongAdder selfNanos = new LongAdder();
+
+        TrieNode(Object key) {
+            this.key = key;
+        }
+
+        TrieNode getChild(Object key) {
+            TrieNode child = children.get(key);
+            if (child == null) {
+                child = children.computeIfAbsent(key, TrieNode::new);
+            }
+            return child;
+        }
+
+        void record(long totalNanos, long childrenNanos) {
+            this.selfNanos.add(Math.max(0, totalNanos - childrenNanos));
+        }
+
+        String getLabel() {
+            String label;
+            if (key instanceof TemplateNode node) {
+                TemplateNode.Origin origin = node.getOrigin();
+                String name = node.isSection() ? "{#" + node.asSection().getName() + "}"
+                        : node.isExpression() ? "{" + node.asExpression().getExpressions().get(0).toOriginalString() + "}"
+                        : node.kind().name();
+                label = name + " " + origin.getTemplateId() + ":" + origin.getLine();
+            } else {
+                label = String.valueOf(key);
+            }
+            // ';' separates the frames and new lines separate the stacks
+            return label.replace(';', ',').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    /**
+     * Stack of the trie nodes being resolved by a thread for a sampled render.
+     */
+    private static class SampleStack {
+
+        private static final int MAX_DEPTH = 256;
+
+        private final BaseEvent[] events = new BaseEvent[MAX_DEPTH];
+        private final TrieNode[] nodes = new TrieNode[MAX_DEPTH];
+        private final long[] starts = new long[MAX_DEPTH];
+        private final long[] childrenNanos = new long[MAX_DEPTH];
+        private int size;
+        private boolean sampled;
+        private int generation;
+
+        TrieNode top(TrieNode root) {
+            return size > 0 ? nodes[size - 1] : root;
+        }
+
+        void push(BaseEvent event, TrieNode node, long start) {
+            if (size < MAX_DEPTH) {
+                events[size] = event;
+                nodes[size] = node;
+                starts[size] = start;
+                childrenNanos[size] = 0;
+                size++;
+            }
+        }
+
+        /**
+         * Returns true if the current render is sampled and has started since the collector has been enabled.
+         */
+        boolean isSampled(int generation) {
+            return sampled && this.generation == generation;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                events[i] = null;
+                nodes[i] = null;
+            }
+            size = 0;
+            sampled = false;
+        }
+
+        void pop(BaseEvent event, long end) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (events[i] == event) {
+                    long total = end - starts[i];
+                    nodes[i].record(total, childrenNanos[i]);
+                    if (i > 0) {
+                        childrenNanos[i - 1] += total;
+                    }
+                    // Forget the nodes above which have been resolved asynchronously by another thread
+                    for (int j = i; j < size; j++) {
+                        events[j] = null;
+                        nodes[j] = null;
+                    }
+                    size = i;
+                    return;
+                }
+            }
+        }
+    }
+}
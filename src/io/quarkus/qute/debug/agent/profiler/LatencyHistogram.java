@@ -0,0 +1,146 @@
+package io.quarkus.qute.debug.agent.profiler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds.
+ * <p>
+ * Each power of two is divided in {@link #SUB_BUCKETS} linear buckets, which
+ * gives a relative error of 25% for 160 buckets covering 1ns to ~36min.
+ * <p>
+ * Recording is lock-free: each thread records in a stripe (selected by the thread
+ * id) of atomic counters which is allocated on the first record.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // Slots of a stripe after the buckets
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+    private static final int SLOTS = BUCKETS + 3;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    public LatencyHistogram() {
+        this.stripes = new AtomicReferenceArray<>(STRIPES);
+    }
+
+    /**
+     * Records the given latency.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        AtomicLongArray stripe = getStripe();
+        stripe.incrementAndGet(bucketIndex(nanos));
+        stripe.incrementAndGet(COUNT);
+        stripe.addAndGet(SUM, nanos);
+        long max;
+        while (nanos > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, nanos)) {
+            // retry
+        }
+    }
+
+    private AtomicLongArray getStripe() {
+        int index = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(SLOTS));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * Adds the values of this histogram to the given snapshot.
+     *
+     * @param snapshot the snapshot to update.
+     */
+    public void addTo(Snapshot snapshot) {
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    snapshot.counts[bucket] += stripe.get(bucket);
+                }
+                snapshot.count += stripe.get(COUNT);
+                snapshot.totalNanos += stripe.get(SUM);
+                snapshot.maxNanos = Math.max(snapshot.maxNanos, stripe.get(MAX));
+            }
+        }
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (index % SUB_BUCKETS + 1) * width - 1;
+    }
+
+    /**
+     * Merged values of one or several histograms.
+     */
+    public static class Snapshot {
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the upper bound of the bucket which contains the given percentile.
+         *
+         * @param percentile the percentile (between 0 and 100).
+         * @return the upper bound in nanoseconds of the bucket which contains the given percentile.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(bucketUpperBound(bucket), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.quarkus.qute.debug.agent.profiler;
+
+import io.quarkus.qute.TemplateNode;
+
+/**
+ * Latency statistics of the template nodes of a given template line and node kind.
+ */
+public class ProfileEntry {
+
+    private final String templateId;
+    private final int line;
+    private final TemplateNode.Kind kind;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+
+    public ProfileEntry(String templateId, int line, TemplateNode.Kind kind, LatencyHistogram.Snapshot snapshot) {
+        this.templateId = templateId;
+        this.line = line;
+        this.kind = kind;
+        this.count = snapshot.getCount();
+        this.totalNanos = snapshot.getTotalNanos();
+        this.maxNanos = snapshot.getMaxNanos();
+        this.p50Nanos = snapshot.getPercentile(50);
+        this.p90Nanos = snapshot.getPercentile(90);
+        this.p99Nanos = snapshot.getPercentile(99);
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public TemplateNode.Kind getKind() {
+        return kind;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+}
@@ -0,0 +1,58 @@
+package io.quarkus.qute.debug.agent.profiler;
+
+import io.quarkus.qute.trace.ResolveEvent;
+
+/**
+ * Start times of the nodes being resolved by a thread, used to pair the before / after
+ * resolve events of a node.
+ * <p>
+ * An after resolve event which is received by another thread (asynchronous resolution)
+ * is not found in the stack.
+ */
+public class ResolveStack {
+
+    private static final int MAX_DEPTH = 256;
+
+    private final ResolveEvent[] events = new ResolveEvent[MAX_DEPTH];
+    private final long[] starts = new long[MAX_DEPTH];
+    private int size;
+
+    public void push(ResolveEvent event, long start) {
+        if (size < MAX_DEPTH) {
+            events[size] = event;
+            starts[size] = start;
+            size++;
+        }
+    }
+
+    /**
+     * Removes the given event from the stack and returns its start time.
+     *
+     * @param event the resolve event.
+     * @return the start time of the given event or -1 if the event is not in the stack.
+     */
+    public long pop(ResolveEvent event) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (events[i] == event) {
+                // Forget the nodes above which have been resolved asynchronously by another thread
+                for (int j = i; j < size; j++) {
+                    events[j] = null;
+                }
+                size = i;
+                return starts[i];
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            events[i] = null;
+        }
+        size = 0;
+    }
+}
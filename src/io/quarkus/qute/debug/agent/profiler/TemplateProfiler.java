@@ -0,0 +1,143 @@
+package io.quarkus.qute.debug.agent.profiler;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profiler which measures the resolution time of each template node.
+ * <p>
+ * The before / after resolve events of a node are paired with
+ * {@link System#nanoTime()} and the latencies are recorded in a
+ * {@link LatencyHistogram} per template node. The histograms are aggregated by
+ * template id, line and node kind when the profile is requested.
+ * <p>
+ * The nodes left in the stack of a thread by the asynchronous resolutions (the after
+ * resolve event is received by another thread) are forgotten when the thread starts
+ * a render which is not nested in another one.
+ * <p>
+ * The profiler never suspends the render threads.
+ */
+public class TemplateProfiler {
+
+    private volatile boolean enabled;
+
+    private final Map<TemplateNode, LatencyHistogram> histograms;
+
+    private final ThreadLocal<ThreadRender> renders;
+
+    public TemplateProfiler() {
+        this.histograms = new ConcurrentHashMap<>();
+        this.renders = ThreadLocal.withInitial(ThreadRender::new);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void onStartTemplate(TemplateEvent event) {
+        ThreadRender render = renders.get();
+        if (render.depth == 0 || render.event.getEllapsedTime() != -1) {
+            // No render in progress on this thread (or it has ended on another thread): the nodes left
+            // in the stack have been resolved by another thread
+            render.stack.clear();
+            render.event = event;
+            render.depth = 0;
+        }
+        render.depth++;
+    }
+
+    public void onEndTemplate(TemplateEvent event) {
+        ThreadRender render = renders.get();
+        if (render.event == event) {
+            render.stack.clear();
+            render.event = null;
+            render.depth = 0;
+        } else if (render.depth > 1) {
+            // End of a nested render
+            render.depth--;
+        }
+    }
+
+    public void onBeforeResolve(ResolveEvent event) {
+        renders.get().stack.push(event, System.nanoTime());
+    }
+
+    public void onAfterResolve(ResolveEvent event) {
+        long end = System.nanoTime();
+        long start = renders.get().stack.pop(event);
+        long elapsed;
+        if (start != -1) {
+            elapsed = end - start;
+        } else {
+            // The node has been resolved asynchronously by another thread
+            long ellapsedTime = event.getEllapsedTime();
+            if (ellapsedTime < 0) {
+                return;
+            }
+            elapsed = TimeUnit.MILLISECONDS.toNanos(ellapsedTime);
+        }
+        TemplateNode node = event.getTemplateNode();
+        LatencyHistogram histogram = histograms.get(node);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(node, k -> new LatencyHistogram());
+        }
+        histogram.record(elapsed);
+    }
+
+    /**
+     * Returns the latency statistics aggregated by template id, line and node kind,
+     * sorted by total time.
+     *
+     * @return the latency statistics aggregated by template id, line and node kind.
+     */
+    public List<ProfileEntry> getEntries() {
+        Map<String, TemplateNode> nodes = new HashMap<>();
+        Map<String, LatencyHistogram.Snapshot> snapshots = new HashMap<>();
+        for (var entry : histograms.entrySet()) {
+            TemplateNode node = entry.getKey();
+            TemplateNode.Origin origin = node.getOrigin();
+            String key = origin.getTemplateId() + ":" + origin.getLine() + ":" + node.kind();
+            nodes.putIfAbsent(key, node);
+            entry.getValue().addTo(snapshots.computeIfAbsent(key, k -> new LatencyHistogram.Snapshot()));
+        }
+        List<ProfileEntry> entries = new ArrayList<>(snapshots.size());
+        for (var entry : snapshots.entrySet()) {
+            TemplateNode node = nodes.get(entry.getKey());
+            TemplateNode.Origin origin = node.getOrigin();
+            entries.add(new ProfileEntry(origin.getTemplateId(), origin.getLine(), node.kind(), entry.getValue()));
+        }
+        entries.sort(Comparator.comparingLong(ProfileEntry::getTotalNanos).reversed());
+        return entries;
+    }
+
+    /**
+     * Removes all recorded latencies.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Render in progress on a thread: its start event, the depth of the nested renders and
+     * the nodes being resolved.
+     */
+    private static class ThreadRender {
+
+        private final ResolveStack stack = new ResolveStack();
+        private TemplateEvent event;
+        private int depth;
+    }
+}
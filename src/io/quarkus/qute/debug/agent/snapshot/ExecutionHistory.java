@@ -0,0 +1,205 @@
+package io.quarkus.qute.debug.agent.snapshot;
+
+import io.quarkus.qute.Mapper;
+import io.quarkus.qute.ResolutionContext;
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.debug.agent.RemoteStackFrame;
+import org.eclipse.lsp4j.debug.Source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flight recorder of the last template nodes executed by a render thread, used to step
+ * back when the thread is suspended.
+ * <p>
+ * The history is a ring buffer of preallocated entries which are reused: recording a
+ * node only copies the references of the node, of its line and of the local variables
+ * (shallow copy bounded by {@code maxVariables}), the values are converted to
+ * {@link SnapshotVariable} only when an entry is shown by a step back. The data
+ * objects which are {@link Mapper} are recorded as is: their variables are resolved
+ * only when the entry is shown.
+ * <p>
+ * The history is written by the render thread and read by the debugger while the
+ * render thread is suspended.
+ */
+public class ExecutionHistory {
+
+    private final Entry[] entries;
+
+    // Index of the next entry to write
+    private int next;
+
+    private int size;
+
+    public ExecutionHistory(int capacity, int maxVariables) {
+        this.entries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry(maxVariables);
+        }
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the number of recorded entries.
+     *
+     * @return the number of recorded entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Records the given stack frame, it becomes the entry 0 of the history.
+     *
+     * @param frame the stack frame of the template node which is executed.
+     */
+    public void record(RemoteStackFrame frame) {
+        Entry entry = entries[next];
+        entry.record(frame);
+        next = (next + 1) % entries.length;
+        if (size < entries.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the entry recorded before the last given number of entries.
+     *
+     * @param back 0 for the last recorded entry, 1 for the previous one...
+     * @return the entry.
+     */
+    public Entry get(int back) {
+        if (back < 0 || back >= size) {
+            throw new IndexOutOfBoundsException(back);
+        }
+        int index = next - 1 - back;
+        if (index < 0) {
+            index += entries.length;
+        }
+        return entries[index];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            get(i).clear();
+        }
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Recorded execution of a template node.
+     */
+    public static class Entry {
+
+        private final String[] names;
+        private final Object[] values;
+        private int variableCount;
+        private TemplateNode node;
+        private String templateId;
+        private int line;
+        private String name;
+        private Source source;
+
+        Entry(int maxVariables) {
+            this.names = new String[maxVariables];
+            this.values = new Object[maxVariables];
+        }
+
+        void record(RemoteStackFrame frame) {
+            clear();
+            this.node = frame.getEvent().getTemplateNode();
+            this.templateId = frame.getTemplateId();
+            this.line = frame.getLine();
+            this.name = frame.getName();
+            this.source = frame.getSource();
+            var localContext = frame.getEvent().getContext();
+            while (localContext.getParent() != null && variableCount < names.length) {
+                recordData(localContext);
+                localContext = localContext.getParent();
+            }
+        }
+
+        private void recordData(ResolutionContext context) {
+            Object data = context.getData();
+            if (data instanceof Map<?, ?> dataMap) {
+                for (Map.Entry<?, ?> entry : dataMap.entrySet()) {
+                    if (!recordVariable(entry.getKey(), entry.getValue())) {
+                        return;
+                    }
+                }
+            } else if (data instanceof Mapper dataMapper) {
+                // Don't resolve the mapped keys for each node, a null name marks the variables of the mapper
+                recordVariable(null, dataMapper);
+            }
+        }
+
+        private boolean recordVariable(Object key, Object value) {
+            if (variableCount >= names.length) {
+                return false;
+            }
+            names[variableCount] = key != null ? String.valueOf(key) : null;
+            values[variableCount] = value;
+            variableCount++;
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < variableCount; i++) {
+                names[i] = null;
+                values[i] = null;
+            }
+            variableCount = 0;
+            node = null;
+            source = null;
+        }
+
+        public TemplateNode getNode() {
+            return node;
+        }
+
+        public String getTemplateId() {
+            return templateId;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns the stack frame which shows this entry, with the current values of the recorded variables.
+         *
+         * @param threadName the name of the render thread.
+         * @param maxDepth the maximum depth of the variables.
+         * @param maxVariables the maximum number of variables.
+         * @return the stack frame which shows this entry.
+         */
+        public FrameSnapshot toFrame(String threadName, int maxDepth, int maxVariables) {
+            List<String> variableNames = new ArrayList<>(variableCount);
+            List<Object> variableValues = new ArrayList<>(variableCount);
+            for (int i = 0; i < variableCount && variableNames.size() < maxVariables; i++) {
+                if (names[i] == null && values[i] instanceof Mapper dataMapper) {
+                    for (String key : dataMapper.mappedKeys()) {
+                        if (variableNames.size() >= maxVariables) {
+                            break;
+                        }
+                        variableNames.add(key);
+                        variableValues.add(dataMapper.getAsync(key));
+                    }
+                } else {
+                    variableNames.add(names[i]);
+                    variableValues.add(values[i]);
+                }
+            }
+            SnapshotCapture capture = new SnapshotCapture(maxDepth, maxVariables);
+            List<SnapshotVariable> locals = capture.captureVariables(variableNames.toArray(new String[0]),
+                    variableValues.toArray(), variableNames.size());
+            return FrameSnapshot.of(name, templateId, source, line, threadName, locals);
+        }
+    }
+}
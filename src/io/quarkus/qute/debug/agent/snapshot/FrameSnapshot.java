@@ -0,0 +1,167 @@
+package io.quarkus.qute.debug.agent.snapshot;
+
+import io.quarkus.qute.ResolutionContext;
+import io.quarkus.qute.debug.agent.RemoteStackFrame;
+import io.quarkus.qute.debug.agent.variables.VariablesProvider;
+import io.quarkus.qute.debug.agent.variables.VariablesRegistry;
+import org.eclipse.lsp4j.debug.Scope;
+import org.eclipse.lsp4j.debug.Source;
+import org.eclipse.lsp4j.debug.StackFrame;
+import org.eclipse.lsp4j.debug.Variable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable copy of the variables of a stack frame taken by a snapshot breakpoint.
+ * <p>
+ * It is shown as a stack frame of the snapshots thread (see {@link SnapshotStore}) and its
+ * variables are browsed with the scopes / variables requests.
+ */
+public class FrameSnapshot extends StackFrame {
+
+    private final transient String templateId;
+    private final transient String threadName;
+    private final transient Instant timestamp;
+    private final transient List<SnapshotVariable> locals;
+    private final transient List<SnapshotVariable> globals;
+    private transient Scope[] scopes;
+
+    private FrameSnapshot(RemoteStackFrame frame, String threadName, List<SnapshotVariable> locals, List<SnapshotVariable> globals) {
+        this(frame.getTemplateId(), threadName, Instant.now(), locals, globals);
+        super.setName(frame.getName() + " [" + threadName + " at " + timestamp + "]");
+        super.setSource(frame.getSource());
+        super.setLine(frame.getLine());
+    }
+
+    private FrameSnapshot(String templateId, String threadName, Instant timestamp, List<SnapshotVariable> locals,
+            List<SnapshotVariable> globals) {
+        this.templateId = templateId;
+        this.threadName = threadName;
+        this.timestamp = timestamp;
+        this.locals = List.copyOf(locals);
+        this.globals = List.copyOf(globals);
+        super.setId(RemoteStackFrame.nextFrameId());
+    }
+
+    /**
+     * Creates the stack frame of a node recorded by an {@link ExecutionHistory}.
+     */
+    static FrameSnapshot of(String name, String templateId, Source source, int line, String threadName,
+            List<SnapshotVariable> locals) {
+        FrameSnapshot frame = new FrameSnapshot(templateId, threadName, Instant.now(), locals, List.of());
+        frame.setName(name + " [history]");
+        frame.setSource(source);
+        frame.setLine(line);
+        return frame;
+    }
+
+    /**
+     * Copies the variables of the given stack frame.
+     *
+     * @param frame the stack frame which has hit the snapshot breakpoint.
+     * @param threadName the name of the render thread.
+     * @param maxDepth the maximum depth of the copied variables.
+     * @param maxVariables the maximum number of copied variables.
+     * @return the snapshot of the given stack frame.
+     */
+    public static FrameSnapshot capture(RemoteStackFrame frame, String threadName, int maxDepth, int maxVariables) {
+        ResolutionContext context = frame.getEvent().getContext();
+        SnapshotCapture capture = new SnapshotCapture(maxDepth, maxVariables);
+        List<SnapshotVariable> locals = capture.captureLocals(context);
+        List<SnapshotVariable> globals = capture.captureGlobals(context);
+        return new FrameSnapshot(frame, threadName, locals, globals);
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public List<SnapshotVariable> getLocals() {
+        return locals;
+    }
+
+    public List<SnapshotVariable> getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Returns the Locals / Globals scopes of the snapshot, registered in the given variables registry.
+     *
+     * @param variablesRegistry the variables registry.
+     * @return the scopes of the snapshot.
+     */
+    public synchronized Scope[] getScopes(VariablesRegistry variablesRegistry) {
+        if (scopes == null) {
+            scopes = new Scope[] { new SnapshotScope("Locals", locals, variablesRegistry),
+                    new SnapshotScope("Globals", globals, variablesRegistry) };
+        }
+        return scopes;
+    }
+
+    private static Collection<Variable> toVariables(List<SnapshotVariable> snapshotVariables, VariablesRegistry variablesRegistry) {
+        Collection<Variable> variables = new ArrayList<>(snapshotVariables.size());
+        for (SnapshotVariable snapshotVariable : snapshotVariables) {
+            Variable variable = snapshotVariable.getChildren().isEmpty() ? new Variable()
+                    : new SnapshotVariables(snapshotVariable.getChildren(), variablesRegistry);
+            variable.setName(snapshotVariable.getName());
+            variable.setValue(snapshotVariable.getValue());
+            variable.setType(snapshotVariable.getType());
+            variables.add(variable);
+        }
+        return variables;
+    }
+
+    private static class SnapshotScope extends Scope implements VariablesProvider {
+
+        private final transient List<SnapshotVariable> snapshotVariables;
+        private final transient VariablesRegistry variablesRegistry;
+        private transient Collection<Variable> variables;
+
+        SnapshotScope(String name, List<SnapshotVariable> snapshotVariables, VariablesRegistry variablesRegistry) {
+            super.setName(name);
+            this.snapshotVariables = snapshotVariables;
+            this.variablesRegistry = variablesRegistry;
+            variablesRegistry.addVariable(this);
+        }
+
+        @Override
+        public Collection<Variable> getVariables() {
+            if (variables == null) {
+                variables = toVariables(snapshotVariables, variablesRegistry);
+            }
+            return variables;
+        }
+    }
+
+    private static class SnapshotVariables extends Variable implements VariablesProvider {
+
+        private final transient List<SnapshotVariable> children;
+        private final transient VariablesRegistry variablesRegistry;
+        private transient Collection<Variable> variables;
+
+        SnapshotVariables(List<SnapshotVariable> children, VariablesRegistry variablesRegistry) {
+            this.children = children;
+            this.variablesRegistry = variablesRegistry;
+            variablesRegistry.addVariable(this);
+        }
+
+        @Override
+        public Collection<Variable> getVariables() {
+            if (variables == null) {
+                variables = toVariables(children, variablesRegistry);
+            }
+            return variables;
+        }
+    }
+}
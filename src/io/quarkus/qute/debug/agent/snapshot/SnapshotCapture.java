@@ -0,0 +1,171 @@
+package io.quarkus.qute.debug.agent.snapshot;
+
+import io.quarkus.qute.Mapper;
+import io.quarkus.qute.ResolutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Copies the variables of a resolution context, the same variables as the
+ * {@link io.quarkus.qute.debug.agent.scopes.LocalsScope} and
+ * {@link io.quarkus.qute.debug.agent.scopes.GlobalsScope}, bounded by depth and size.
+ */
+class SnapshotCapture {
+
+    private static final int MAX_VALUE_LENGTH = 1024;
+
+    private final int maxDepth;
+
+    // Remaining number of variables which can be copied in the snapshot
+    private int remaining;
+
+    SnapshotCapture(int maxDepth, int maxVariables) {
+        this.maxDepth = maxDepth;
+        this.remaining = maxVariables;
+    }
+
+    List<SnapshotVariable> captureLocals(ResolutionContext context) {
+        List<SnapshotVariable> variables = new ArrayList<>();
+        var localContext = context;
+        while (localContext.getParent() != null) {
+            captureData(localContext, variables);
+            localContext = localContext.getParent();
+        }
+        return variables;
+    }
+
+    List<SnapshotVariable> captureGlobals(ResolutionContext context) {
+        List<SnapshotVariable> variables = new ArrayList<>();
+        var globalContext = context;
+        while (globalContext.getParent() != null) {
+            globalContext = globalContext.getParent();
+        }
+        captureData(globalContext, variables);
+        return variables;
+    }
+
+    List<SnapshotVariable> captureVariables(String[] names, Object[] values, int count) {
+        List<SnapshotVariable> variables = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (!capture(names[i], values[i], 1, variables)) {
+                break;
+            }
+        }
+        return variables;
+    }
+
+    private void captureData(ResolutionContext context, List<SnapshotVariable> variables) {
+        Object data = context.getData();
+        if (data instanceof Map<?, ?> dataMap) {
+            for (Map.Entry<?, ?> entry : dataMap.entrySet()) {
+                if (!capture(String.valueOf(entry.getKey()), entry.getValue(), 1, variables)) {
+                    return;
+                }
+            }
+        } else if (data instanceof Mapper dataMapper) {
+            for (String name : dataMapper.mappedKeys()) {
+                if (!capture(name, dataMapper.getAsync(name), 1, variables)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean capture(String name, Object value, int depth, List<SnapshotVariable> variables) {
+        if (remaining <= 0) {
+            return false;
+        }
+        remaining--;
+        if (value instanceof CompletionStage<?> future) {
+            CompletableFuture<?> f = future.toCompletableFuture();
+            if (f.isDone() && !f.isCompletedExceptionally()) {
+                value = f.getNow(null);
+            }
+        }
+        String s;
+        String type = null;
+        if (value != null) {
+            try {
+                s = toString(value);
+            } catch (RuntimeException e) {
+                s = "<error: " + e.getMessage() + ">";
+            }
+            if (s.length() > MAX_VALUE_LENGTH) {
+                s = s.substring(0, MAX_VALUE_LENGTH) + "...";
+            }
+            type = value.getClass().getName();
+        } else {
+            s = "null";
+        }
+        List<SnapshotVariable> children = new ArrayList<>();
+        if (value instanceof Iterable<?> iterable && depth < maxDepth) {
+            int index = 0;
+            for (Object item : iterable) {
+                if (!capture(String.valueOf(index++), item, depth + 1, children)) {
+                    break;
+                }
+            }
+        }
+        variables.add(new SnapshotVariable(name, s, type, children));
+        return true;
+    }
+
+    /**
+     * Returns the string of the given value. The elements of iterables and maps are
+     * appended until the maximum length is reached, instead of calling their
+     * toString() which would render all the elements before truncating them.
+     */
+    private static String toString(Object value) {
+        if (!(value instanceof Iterable<?>) && !(value instanceof Map<?, ?>)) {
+            return value.toString();
+        }
+        StringBuilder s = new StringBuilder();
+        append(value, s);
+        return s.toString();
+    }
+
+    private static void append(Object value, StringBuilder s) {
+        if (value instanceof Iterable<?> iterable) {
+            s.append('[');
+            boolean first = true;
+            for (Object item : iterable) {
+                if (!appendSeparator(s, first)) {
+                    return;
+                }
+                first = false;
+                append(item, s);
+            }
+            s.append(']');
+        } else if (value instanceof Map<?, ?> map) {
+            s.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!appendSeparator(s, first)) {
+                    return;
+                }
+                first = false;
+                append(entry.getKey(), s);
+                s.append('=');
+                append(entry.getValue(), s);
+            }
+            s.append('}');
+        } else {
+            s.append(value);
+        }
+    }
+
+    private static boolean appendSeparator(StringBuilder s, boolean first) {
+        if (s.length() > MAX_VALUE_LENGTH) {
+            // the caller truncates the string, stop iterating
+            return false;
+        }
+        if (!first) {
+            s.append(", ");
+        }
+        return true;
+    }
+}
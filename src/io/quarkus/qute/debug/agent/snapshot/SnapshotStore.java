@@ -0,0 +1,89 @@
+package io.quarkus.qute.debug.agent.snapshot;
+
+import org.eclipse.lsp4j.debug.Thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded store of the snapshots taken by the snapshot breakpoints: the oldest snapshot
+ * is evicted when the store is full.
+ * <p>
+ * The snapshots are shown as the stack frames of a synthetic suspended thread, the most
+ * recent first. Continuing this thread discards the snapshots.
+ */
+public class SnapshotStore {
+
+    public static final int THREAD_ID = Integer.MAX_VALUE;
+
+    private static final int DEFAULT_MAX_SNAPSHOTS = 100;
+
+    private final Thread thread;
+
+    private final Deque<FrameSnapshot> snapshots;
+
+    private volatile int maxSnapshots;
+
+    public SnapshotStore() {
+        this.thread = new Thread();
+        this.thread.setId(THREAD_ID);
+        this.thread.setName("Snapshots");
+        this.snapshots = new ArrayDeque<>();
+        this.maxSnapshots = DEFAULT_MAX_SNAPSHOTS;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public int getMaxSnapshots() {
+        return maxSnapshots;
+    }
+
+    public void setMaxSnapshots(int maxSnapshots) {
+        this.maxSnapshots = Math.max(1, maxSnapshots);
+    }
+
+    /**
+     * Adds the given snapshot and evicts the oldest snapshots beyond the maximum size.
+     *
+     * @param snapshot the snapshot to add.
+     * @return true if the store was empty.
+     */
+    public synchronized boolean add(FrameSnapshot snapshot) {
+        boolean wasEmpty = snapshots.isEmpty();
+        snapshots.addFirst(snapshot);
+        while (snapshots.size() > maxSnapshots) {
+            snapshots.removeLast();
+        }
+        return wasEmpty;
+    }
+
+    public synchronized boolean isEmpty() {
+        return snapshots.isEmpty();
+    }
+
+    /**
+     * Returns the snapshots, the most recent first.
+     *
+     * @return the snapshots, the most recent first.
+     */
+    public synchronized List<FrameSnapshot> getSnapshots() {
+        return new ArrayList<>(snapshots);
+    }
+
+    public synchronized FrameSnapshot getSnapshot(int frameId) {
+        for (FrameSnapshot snapshot : snapshots) {
+            if (snapshot.getId() == frameId) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        snapshots.clear();
+    }
+}
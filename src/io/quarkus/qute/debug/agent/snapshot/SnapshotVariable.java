@@ -0,0 +1,38 @@
+package io.quarkus.qute.debug.agent.snapshot;
+
+import java.util.List;
+
+/**
+ * Immutable copy of a variable captured by a snapshot breakpoint: the value is copied with
+ * {@link Object#toString()} when the snapshot is taken.
+ */
+public class SnapshotVariable {
+
+    private final String name;
+    private final String value;
+    private final String type;
+    private final List<SnapshotVariable> children;
+
+    public SnapshotVariable(String name, String value, String type, List<SnapshotVariable> children) {
+        this.name = name;
+        this.value = value;
+        this.type = type;
+        this.children = List.copyOf(children);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<SnapshotVariable> getChildren() {
+        return children;
+    }
+}
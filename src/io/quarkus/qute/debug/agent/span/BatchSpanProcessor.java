@@ -0,0 +1,123 @@
+package io.quarkus.qute.debug.agent.span;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues the ended spans and exports them by batch from a background thread, when a
+ * batch is full or when the export delay has elapsed.
+ * <p>
+ * The render threads never wait for the exporter: the spans which don't fit in the
+ * bounded queue are dropped and counted.
+ */
+public class BatchSpanProcessor {
+
+    private final SpanExporter exporter;
+    private final int maxBatchSize;
+    private final long exportDelayMillis;
+    private final BlockingQueue<Span> queue;
+    private final LongAdder droppedSpans;
+    private final Thread exportThread;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a batch span processor and starts its export thread.
+     *
+     * @param exporter the exporter.
+     * @param maxQueueSize the maximum number of spans waiting to be exported.
+     * @param maxBatchSize the maximum number of spans exported at once.
+     * @param exportDelayMillis the maximum delay before exporting a batch which is not full.
+     */
+    public BatchSpanProcessor(SpanExporter exporter, int maxQueueSize, int maxBatchSize, long exportDelayMillis) {
+        this.exporter = exporter;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.exportDelayMillis = Math.max(1, exportDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, maxQueueSize));
+        this.droppedSpans = new LongAdder();
+        this.exportThread = new Thread(this::exportLoop, "Qute span export");
+        this.exportThread.setDaemon(true);
+        this.exportThread.start();
+    }
+
+    /**
+     * Queues the given ended span.
+     *
+     * @param span the span.
+     */
+    public void onEnd(Span span) {
+        if (shutdown || !queue.offer(span)) {
+            droppedSpans.increment();
+        }
+    }
+
+    /**
+     * Returns the number of spans dropped because the queue was full.
+     *
+     * @return the number of dropped spans.
+     */
+    public long getDroppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    private void exportLoop() {
+        List<Span> batch = new ArrayList<>(maxBatchSize);
+        while (!shutdown || !queue.isEmpty()) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(exportDelayMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Span span = remaining > 0 && !shutdown ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (span == null) {
+                        break;
+                    }
+                    batch.add(span);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: export the queued spans
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+            export(batch);
+        }
+    }
+
+    private void export(List<Span> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            exporter.export(batch);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        batch.clear();
+    }
+
+    /**
+     * Exports the queued spans and stops the export thread.
+     *
+     * @param timeoutMillis the maximum time to wait for the export of the queued spans.
+     */
+    public void shutdown(long timeoutMillis) {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        exportThread.interrupt();
+        try {
+            exportThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            exporter.shutdown();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
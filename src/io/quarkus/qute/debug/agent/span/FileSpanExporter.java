@@ -0,0 +1,69 @@
+package io.quarkus.qute.debug.agent.span;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exporter which appends the spans to a file, one JSON object per line with the field
+ * names of the OTLP JSON encoding:
+ *
+ * <pre>
+ * {"traceId":"...","spanId":"...","parentSpanId":"...","name":"{#for}","startTimeUnixNano":...,"endTimeUnixNano":...,
+ *  "attributes":{"qute.template.id":"hello","qute.template.line":3},"status":"ERROR"}
+ * </pre>
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private final Writer writer;
+
+    public FileSpanExporter(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void export(List<Span> spans) throws IOException {
+        for (Span span : spans) {
+            writer.append(toJson(span).toString()).append('\n');
+        }
+        writer.flush();
+    }
+
+    private static JsonObject toJson(Span span) {
+        JsonObject json = new JsonObject();
+        json.addProperty("traceId", span.traceId());
+        json.addProperty("spanId", span.spanId());
+        if (span.parentSpanId() != null) {
+            json.addProperty("parentSpanId", span.parentSpanId());
+        }
+        json.addProperty("name", span.name());
+        json.addProperty("startTimeUnixNano", span.startEpochNanos());
+        json.addProperty("endTimeUnixNano", span.getEndEpochNanos());
+        JsonObject attributes = new JsonObject();
+        for (Map.Entry<String, Object> attribute : span.attributes().entrySet()) {
+            if (attribute.getValue() instanceof Number number) {
+                attributes.addProperty(attribute.getKey(), number);
+            } else {
+                attributes.addProperty(attribute.getKey(), String.valueOf(attribute.getValue()));
+            }
+        }
+        json.add("attributes", attributes);
+        json.addProperty("status", span.error() ? "ERROR" : "OK");
+        return json;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,30 @@
+package io.quarkus.qute.debug.agent.span;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exporter which keeps the spans in memory.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+    private final List<Span> spans = new ArrayList<>();
+
+    @Override
+    public synchronized void export(List<Span> spans) {
+        this.spans.addAll(spans);
+    }
+
+    /**
+     * Returns a copy of the exported spans.
+     *
+     * @return a copy of the exported spans.
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    public synchronized void reset() {
+        spans.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package io.quarkus.qute.debug.agent.span;
+
+import java.util.Map;
+
+/**
+ * Span of a template render or of a section resolution, with the identifiers and the
+ * timestamps of the OpenTelemetry data model.
+ *
+ * @param traceId the trace id (32 hexadecimal characters).
+ * @param spanId the span id (16 hexadecimal characters).
+ * @param parentSpanId the span id of the parent or null for the render span.
+ * @param name the span name.
+ * @param startEpochNanos the start time in nanoseconds since the epoch.
+ * @param durationNanos the duration in nanoseconds.
+ * @param attributes the attributes (template id, line...).
+ * @param error true if the resolution of the section has failed.
+ */
+public record Span(String traceId, String spanId, String parentSpanId, String name, long startEpochNanos,
+        long durationNanos, Map<String, Object> attributes, boolean error) {
+
+    public long getEndEpochNanos() {
+        return startEpochNanos + durationNanos;
+    }
+}
@@ -0,0 +1,28 @@
+package io.quarkus.qute.debug.agent.span;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Exports the batches of spans produced by the {@link SpanTraceListener}.
+ * <p>
+ * The methods are called by the export thread of the {@link BatchSpanProcessor}, one call at a time.
+ */
+public interface SpanExporter {
+
+    /**
+     * Exports the given spans.
+     *
+     * @param spans the spans.
+     * @throws IOException if the spans cannot be exported.
+     */
+    void export(List<Span> spans) throws IOException;
+
+    /**
+     * Releases the resources of the exporter once the last batch has been exported.
+     *
+     * @throws IOException if the resources cannot be released.
+     */
+    default void shutdown() throws IOException {
+    }
+}
@@ -0,0 +1,201 @@
+package io.quarkus.qute.debug.agent.span;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.trace.BaseEvent;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+import io.quarkus.qute.trace.TraceListener;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TraceListener} which produces a span per render and a child span per section
+ * ({@code #for}, {@code #include}, user tags...) whose resolution lasts at least the
+ * given threshold:
+ *
+ * <pre>
+ * BatchSpanProcessor processor = new BatchSpanProcessor(new FileSpanExporter(file), 2048, 512, 1000);
+ * engine.addTraceListener(new SpanTraceListener(processor, TimeUnit.MILLISECONDS.toNanos(1)));
+ * ...
+ * processor.shutdown(1000);
+ * </pre>
+ * <p>
+ * The sections are only tracked with their start time: the span of a section is
+ * created when it ends, and only if it is slow or if it is the parent of a slow
+ * section, so that the spans of a trace always form a tree. The span ids are generated
+ * on demand, nothing is allocated for the fast sections.
+ */
+public class SpanTraceListener implements TraceListener {
+
+    static final String TEMPLATE_ID = "qute.template.id";
+    static final String TEMPLATE_LINE = "qute.template.line";
+    static final String SECTION_NAME = "qute.section.name";
+
+    private final BatchSpanProcessor processor;
+
+    private final long thresholdNanos;
+
+    private final ThreadLocal<SpanStack> stacks;
+
+    /**
+     * Creates a span listener.
+     *
+     * @param processor the processor which exports the ended spans.
+     * @param thresholdNanos the minimum duration of the sections which produce a span.
+     */
+    public SpanTraceListener(BatchSpanProcessor processor, long thresholdNanos) {
+        this.processor = processor;
+        this.thresholdNanos = thresholdNanos;
+        this.stacks = ThreadLocal.withInitial(SpanStack::new);
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    @Override
+    public void onStartTemplate(TemplateEvent event) {
+        long now = System.nanoTime();
+        SpanStack stack = stacks.get();
+        if (stack.size == 0) {
+            stack.startTrace(now);
+        }
+        stack.push(event, now);
+    }
+
+    @Override
+    public void onBeforeResolve(ResolveEvent event) {
+        SpanStack stack = stacks.get();
+        if (stack.size > 0 && event.getTemplateNode().isSection()) {
+            stack.push(event, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void onAfterResolve(ResolveEvent event) {
+        TemplateNode node = event.getTemplateNode();
+        if (node.isSection()) {
+            end(event, event.getError() != null);
+        }
+    }
+
+    @Override
+    public void onEndTemplate(TemplateEvent event) {
+        end(event, false);
+    }
+
+    private void end(BaseEvent event, boolean error) {
+        long now = System.nanoTime();
+        SpanStack stack = stacks.get();
+        int index = stack.indexOf(event);
+        if (index == -1) {
+            // Resolved asynchronously by another thread
+            return;
+        }
+        long duration = now - stack.starts[index];
+        if (index == 0 || duration >= thresholdNanos || stack.spanIds[index] != 0) {
+            processor.onEnd(createSpan(stack, index, event, duration, error));
+        }
+        stack.popTo(index);
+    }
+
+    private static Span createSpan(SpanStack stack, int index, BaseEvent event, long duration, boolean error) {
+        String parentSpanId = index > 0 ? toHex(stack.getSpanId(index - 1)) : null;
+        Map<String, Object> attributes = new HashMap<>(4);
+        String name;
+        if (event instanceof ResolveEvent resolveEvent) {
+            TemplateNode node = resolveEvent.getTemplateNode();
+            TemplateNode.Origin origin = node.getOrigin();
+            String sectionName = node.asSection().getName();
+            name = "{#" + sectionName + "}";
+            attributes.put(TEMPLATE_ID, origin.getTemplateId());
+            attributes.put(TEMPLATE_LINE, origin.getLine());
+            attributes.put(SECTION_NAME, sectionName);
+        } else {
+            String templateId = ((TemplateEvent) event).getTemplateInstance().getTemplate().getId();
+            name = "render " + templateId;
+            attributes.put(TEMPLATE_ID, templateId);
+        }
+        long startEpochNanos = stack.traceEpochNanos + (stack.starts[index] - stack.traceStartNanos);
+        return new Span(toHex(stack.traceIdHigh) + toHex(stack.traceIdLow), toHex(stack.getSpanId(index)),
+                parentSpanId, name, startEpochNanos, duration, attributes, error);
+    }
+
+    private static String toHex(long id) {
+        String hex = Long.toHexString(id);
+        return hex.length() == 16 ? hex : "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private static long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * Templates and sections being rendered by a thread, with their start times and
+     * the span ids which have already been generated.
+     */
+    private static class SpanStack {
+
+        private static final int MAX_DEPTH = 256;
+
+        private final BaseEvent[] events = new BaseEvent[MAX_DEPTH];
+        private final long[] starts = new long[MAX_DEPTH];
+        private final long[] spanIds = new long[MAX_DEPTH];
+        private int size;
+
+        private long traceIdHigh;
+        private long traceIdLow;
+        private long traceStartNanos;
+        private long traceEpochNanos;
+
+        void startTrace(long now) {
+            traceIdHigh = newId();
+            traceIdLow = newId();
+            Instant instant = Instant.now();
+            traceStartNanos = now;
+            traceEpochNanos = TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+        }
+
+        void push(BaseEvent event, long start) {
+            if (size < MAX_DEPTH) {
+                events[size] = event;
+                starts[size] = start;
+                spanIds[size] = 0;
+                size++;
+            }
+        }
+
+        int indexOf(BaseEvent event) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (events[i] == event) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        long getSpanId(int index) {
+            if (spanIds[index] == 0) {
+                // The span of this template / section will be created when it ends
+                spanIds[index] = newId();
+            }
+            return spanIds[index];
+        }
+
+        void popTo(int index) {
+            // Forget the sections above which have been resolved asynchronously by another thread
+            for (int j = index; j < size; j++) {
+                events[j] = null;
+            }
+            size = index;
+        }
+    }
+}
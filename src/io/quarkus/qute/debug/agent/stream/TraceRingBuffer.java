@@ -0,0 +1,109 @@
+package io.quarkus.qute.debug.agent.stream;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer / multi-consumer queue backed by an array (Dmitry
+ * Vyukov's algorithm): each slot carries a sequence number which tells the producers
+ * and the consumers whether it is free or filled for their turn.
+ * <p>
+ * Several consumers are supported so that a producer can drop the oldest element of a
+ * full buffer while the subscriber drains it.
+ *
+ * @param <T> the element type.
+ */
+class TraceRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex;
+    private final AtomicLong consumerIndex;
+
+    TraceRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.producerIndex = new AtomicLong();
+        this.consumerIndex = new AtomicLong();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds the given element if the buffer is not full.
+     *
+     * @param element the element.
+     * @return true if the element has been added and false if the buffer is full.
+     */
+    boolean offer(T element) {
+        long index = producerIndex.get();
+        while (true) {
+            int slot = (int) index & mask;
+            long delta = sequences.get(slot) - index;
+            if (delta == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    elements.lazySet(slot, element);
+                    // Publish the element to the consumers
+                    sequences.set(slot, index + 1);
+                    return true;
+                }
+                index = producerIndex.get();
+            } else if (delta < 0) {
+                // The slot still holds the element of the previous lap
+                return false;
+            } else {
+                index = producerIndex.get();
+            }
+        }
+    }
+
+    /**
+     * Returns true if no element is ready to be removed.
+     *
+     * @return true if the buffer is empty.
+     */
+    boolean isEmpty() {
+        long index = consumerIndex.get();
+        return sequences.get((int) index & mask) - (index + 1) < 0;
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the oldest element or null if the buffer is empty.
+     */
+    T poll() {
+        long index = consumerIndex.get();
+        while (true) {
+            int slot = (int) index & mask;
+            long delta = sequences.get(slot) - (index + 1);
+            if (delta == 0) {
+                if (consumerIndex.compareAndSet(index, index + 1)) {
+                    T element = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    // Free the slot for the producers of the next lap
+                    sequences.set(slot, index + mask + 1);
+                    return element;
+                }
+                index = consumerIndex.get();
+            } else if (delta < 0) {
+                // The slot is not filled yet
+                return null;
+            } else {
+                index = consumerIndex.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package io.quarkus.qute.debug.agent.stream;
+
+import io.quarkus.qute.TemplateNode;
+import io.quarkus.qute.debug.agent.capture.TraceRecord;
+import io.quarkus.qute.debug.agent.profiler.ResolveStack;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TemplateEvent;
+import io.quarkus.qute.trace.TraceListener;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.Subscriptions;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the trace events of the renders as a {@link Multi} of {@link TraceRecord}:
+ *
+ * <pre>
+ * agent.getTraceStream().records(4096, OverflowStrategy.DROP_OLDEST)
+ *         .subscribe().with(record -> ...);
+ * </pre>
+ * <p>
+ * The render threads never wait for the subscribers: each subscriber has its own
+ * bounded lock-free buffer (see {@link TraceRingBuffer}) where the render threads
+ * publish the records, and the records are delivered according to the requests of the
+ * subscriber from the Mutiny default executor. When the buffer of a slow subscriber is
+ * full, the oldest or the newest record is dropped according to its
+ * {@link OverflowStrategy}.
+ * <p>
+ * Nothing is allocated by the render threads while there is no subscriber.
+ */
+public class TraceStream implements TraceListener {
+
+    private static final TraceSubscription[] EMPTY_SUBSCRIPTIONS = new TraceSubscription[0];
+
+    // Maximum depth of the nested templates ({#include}, user tags...)
+    private static final int MAX_TEMPLATE_DEPTH = 64;
+
+    /**
+     * Record dropped when the buffer of a subscriber is full.
+     */
+    public enum OverflowStrategy {
+        /**
+         * Drops the oldest record of the buffer to add the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Drops the new record.
+         */
+        DROP_NEWEST
+    }
+
+    private final Runnable subscribersChanged;
+
+    private final Executor executor;
+
+    private final ThreadLocal<ThreadStacks> stacks;
+
+    private final LongAdder droppedRecords;
+
+    private volatile TraceSubscription[] subscriptions;
+
+    // Incremented when the first subscriber subscribes: the stacks of the previous
+    // subscribers miss the events received while there was no subscriber
+    private volatile int generation;
+
+    public TraceStream() {
+        this(() -> {
+        }, Infrastructure.getDefaultExecutor());
+    }
+
+    /**
+     * Creates a trace stream.
+     *
+     * @param subscribersChanged called when the first subscriber subscribes and when the last one cancels.
+     * @param executor the executor which delivers the records to the subscribers.
+     */
+    public TraceStream(Runnable subscribersChanged, Executor executor) {
+        this.subscribersChanged = subscribersChanged;
+        this.executor = executor;
+        this.stacks = ThreadLocal.withInitial(ThreadStacks::new);
+        this.droppedRecords = new LongAdder();
+        this.subscriptions = EMPTY_SUBSCRIPTIONS;
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer of a subscriber was full.
+     *
+     * @return the number of dropped records.
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Returns a stream of the trace records of the renders which start after the subscription.
+     *
+     * @param bufferSize the number of records buffered for each subscriber (rounded up to a power of two).
+     * @param overflow the record dropped when the buffer of a subscriber is full.
+     * @return a stream of the trace records.
+     */
+    public Multi<TraceRecord> records(int bufferSize, OverflowStrategy overflow) {
+        return Multi.createFrom().publisher(subscriber -> {
+            TraceSubscription subscription = new TraceSubscription(subscriber, new TraceRingBuffer<>(bufferSize), overflow);
+            subscriber.onSubscribe(subscription);
+            add(subscription);
+        });
+    }
+
+    private void add(TraceSubscription subscription) {
+        boolean first;
+        synchronized (this) {
+            if (subscription.cancelled) {
+                return;
+            }
+            TraceSubscription[] current = subscriptions;
+            TraceSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            first = current.length == 0;
+            if (first) {
+                generation++;
+            }
+            subscriptions = updated;
+        }
+        if (first) {
+            subscribersChanged.run();
+        }
+    }
+
+    private void remove(TraceSubscription subscription) {
+        boolean last;
+        synchronized (this) {
+            TraceSubscription[] current = subscriptions;
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index == -1) {
+                return;
+            }
+            TraceSubscription[] updated = new TraceSubscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            subscriptions = updated;
+            last = updated.length == 0;
+        }
+        if (last) {
+            subscribersChanged.run();
+        }
+    }
+
+    @Override
+    public void onStartTemplate(TemplateEvent event) {
+        long now = System.nanoTime();
+        TraceSubscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) {
+            return;
+        }
+        ThreadStacks stacks = stacks();
+        if (stacks.resolveStack.isEmpty()) {
+            // A render which is not nested in a node of this thread: the templates left
+            // in the stack have ended in another thread
+            stacks.clearTemplates();
+        }
+        stacks.pushTemplate(event, now);
+        publish(subscriptions, new TraceRecord(TraceRecord.Type.START_TEMPLATE, now, Thread.currentThread().threadId(),
+                event.getTemplateInstance().getTemplate().getId(), 0, null, -1, false));
+    }
+
+    @Override
+    public void onBeforeResolve(ResolveEvent event) {
+        long now = System.nanoTime();
+        TraceSubscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) {
+            return;
+        }
+        stacks().resolveStack.push(event, now);
+        TemplateNode node = event.getTemplateNode();
+        TemplateNode.Origin origin = node.getOrigin();
+        publish(subscriptions, new TraceRecord(TraceRecord.Type.BEFORE_RESOLVE, now, Thread.currentThread().threadId(),
+                origin.getTemplateId(), origin.getLine(), node.kind(), -1, false));
+    }
+
+    @Override
+    public void onAfterResolve(ResolveEvent event) {
+        long now = System.nanoTime();
+        TraceSubscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) {
+            return;
+        }
+        long start = stacks().resolveStack.pop(event);
+        TemplateNode node = event.getTemplateNode();
+        TemplateNode.Origin origin = node.getOrigin();
+        publish(subscriptions, new TraceRecord(TraceRecord.Type.AFTER_RESOLVE, now, Thread.currentThread().threadId(),
+                origin.getTemplateId(), origin.getLine(), node.kind(), start != -1 ? now - start : -1,
+                event.getError() != null));
+    }
+
+    @Override
+    public void onEndTemplate(TemplateEvent event) {
+        long now = System.nanoTime();
+        TraceSubscription[] subscriptions = this.subscriptions;
+        if (subscriptions.length == 0) {
+            return;
+        }
+        long start = stacks().popTemplate(event);
+        publish(subscriptions, new TraceRecord(TraceRecord.Type.END_TEMPLATE, now, Thread.currentThread().threadId(),
+                event.getTemplateInstance().getTemplate().getId(), 0, null, start != -1 ? now - start : -1, false));
+    }
+
+    private ThreadStacks stacks() {
+        ThreadStacks stacks = this.stacks.get();
+        int generation = this.generation;
+        if (stacks.generation != generation) {
+            stacks.reset(generation);
+        }
+        return stacks;
+    }
+
+    private static void publish(TraceSubscription[] subscriptions, TraceRecord record) {
+        for (TraceSubscription subscription : subscriptions) {
+            subscription.publish(record);
+        }
+    }
+
+    /**
+     * Subscription of a subscriber: the render threads publish the records in its buffer
+     * and the executor drains the buffer according to the requested records.
+     */
+    private class TraceSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super TraceRecord> downstream;
+        private final TraceRingBuffer<TraceRecord> buffer;
+        private final OverflowStrategy overflow;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        TraceSubscription(Flow.Subscriber<? super TraceRecord> downstream, TraceRingBuffer<TraceRecord> buffer,
+                OverflowStrategy overflow) {
+            this.downstream = downstream;
+            this.buffer = buffer;
+            this.overflow = overflow;
+        }
+
+        void publish(TraceRecord record) {
+            if (!buffer.offer(record)) {
+                droppedRecords.increment();
+                if (overflow == OverflowStrategy.DROP_OLDEST && buffer.poll() != null && !buffer.offer(record)) {
+                    // Another render thread has filled the freed slot: the new record is dropped too
+                    droppedRecords.increment();
+                }
+            }
+            // Signal the drain only when it is not running: a running drain picks up the
+            // record before it stops (see run())
+            if (requested.get() > 0 && wip.get() == 0) {
+                drain();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                downstream.onError(Subscriptions.getInvalidRequestException());
+                return;
+            }
+            Subscriptions.add(requested, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                long requested = this.requested.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (cancelled) {
+                        return;
+                    }
+                    TraceRecord record = buffer.poll();
+                    if (record == null) {
+                        break;
+                    }
+                    downstream.onNext(record);
+                    emitted++;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    this.requested.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0 && !buffer.isEmpty() && this.requested.get() > 0 && wip.compareAndSet(0, 1)) {
+                    // A record has been published while the drain was stopping without signaling it
+                    missed = 1;
+                }
+            } while (missed != 0);
+        }
+    }
+
+    /**
+     * Templates and nodes being rendered by a thread, used to compute the durations.
+     */
+    private static class ThreadStacks {
+
+        private final ResolveStack resolveStack = new ResolveStack();
+        private final TemplateEvent[] templates = new TemplateEvent[MAX_TEMPLATE_DEPTH];
+        private final long[] templateStarts = new long[MAX_TEMPLATE_DEPTH];
+        private int templateDepth;
+        private int generation;
+
+        void reset(int generation) {
+            this.generation = generation;
+            resolveStack.clear();
+            clearTemplates();
+        }
+
+        void clearTemplates() {
+            for (int i = 0; i < templateDepth; i++) {
+                templates[i] = null;
+            }
+            templateDepth = 0;
+        }
+
+        void pushTemplate(TemplateEvent event, long start) {
+            if (templateDepth < MAX_TEMPLATE_DEPTH) {
+                templates[templateDepth] = event;
+                templateStarts[templateDepth] = start;
+                templateDepth++;
+            }
+        }
+
+        long popTemplate(TemplateEvent event) {
+            for (int i = templateDepth - 1; i >= 0; i--) {
+                if (templates[i] == event) {
+                    // Forget the templates above which have been rendered asynchronously by another thread
+                    for (int j = i; j < templateDepth; j++) {
+                        templates[j] = null;
+                    }
+                    templateDepth = i;
+                    if (i == 0) {
+                        // The render is done: the nodes left in the stack have been resolved by another thread
+                        resolveStack.clear();
+                    }
+                    return templateStarts[i];
+                }
+            }
+            return -1;
+        }
+    }
+}
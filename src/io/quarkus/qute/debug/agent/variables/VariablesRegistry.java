@@ -23,6 +23,10 @@ public class VariablesRegistry {
         variablesProviders.put(variable.getVariablesReference(), variable);
     }
 
+    public VariablesProvider getVariablesProvider(int variablesReference) {
+        return variablesProviders.get(variablesReference);
+    }
+
     public Variable[] getVariables(int variablesReference) {
         var result = variablesProviders.get(variablesReference);
         if (result != null) {
@@ -0,0 +1,88 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import org.eclipse.lsp4j.debug.Source;
+import org.eclipse.lsp4j.debug.SourceBreakpoint;
+
+/**
+ * Configurations of the debuggee agent compared by the benchmarks.
+ */
+public enum AgentConfiguration {
+
+    /**
+     * The engine is not tracked by an agent.
+     */
+    NO_LISTENER,
+
+    /**
+     * The engine is tracked by an agent which is disabled (no client connected).
+     */
+    TRACKED_DISABLED,
+
+    /**
+     * The agent is enabled without any breakpoint.
+     */
+    ENABLED_IDLE,
+
+    /**
+     * The agent has unconditional breakpoints in a template which is never rendered.
+     */
+    BREAKPOINTS_ELSEWHERE,
+
+    /**
+     * The agent has breakpoints on all lines of the rendered templates with a condition
+     * which never matches.
+     */
+    CONDITIONAL_NO_MATCH,
+
+    /**
+     * The profiler of the agent is enabled (no client connected).
+     */
+    PROFILER;
+
+    private static final String TEMPLATES_PATH = "src/main/resources/templates/";
+
+    /**
+     * Creates the agent of this configuration for the given engine.
+     *
+     * @param engine the engine.
+     * @return the agent or null for {@link #NO_LISTENER}.
+     */
+    public DebuggeeAgent configure(Engine engine) {
+        if (this == NO_LISTENER) {
+            return null;
+        }
+        DebuggeeAgent agent = new DebuggeeAgent();
+        agent.track(engine);
+        if (this == TRACKED_DISABLED) {
+            return agent;
+        }
+        if (this == PROFILER) {
+            agent.setProfilerEnabled(true);
+            return agent;
+        }
+        agent.setEnabled(true);
+        if (this == BREAKPOINTS_ELSEWHERE) {
+            setBreakpoints(agent, BenchmarkTemplates.OTHER, null);
+        } else if (this == CONDITIONAL_NO_MATCH) {
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                setBreakpoints(agent, templateId, "name == 'nobody'");
+            }
+        }
+        return agent;
+    }
+
+    private static void setBreakpoints(DebuggeeAgent agent, String templateId, String condition) {
+        Source source = new Source();
+        source.setPath(TEMPLATES_PATH + templateId + ".qute");
+        int lineCount = BenchmarkTemplates.getLineCount(templateId);
+        SourceBreakpoint[] breakpoints = new SourceBreakpoint[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            breakpoints[i] = new SourceBreakpoint();
+            breakpoints[i].setLine(i + 1);
+            breakpoints[i].setCondition(condition);
+        }
+        agent.setBreakpoints(breakpoints, source);
+    }
+}
@@ -0,0 +1,68 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+
+import java.util.Map;
+
+/**
+ * Benchmark which measures the overhead of the debuggee agent: each template of
+ * {@link BenchmarkTemplates} is rendered with each {@link AgentConfiguration}, and the
+ * throughput (ops/s) and the bytes allocated by render (B/op, like 'gc.alloc.rate.norm')
+ * are reported.
+ * <p>
+ * Usage: {@code AgentOverheadBenchmark [warmupIterations] [iterations] [iterationMillis] [dataSize]}
+ */
+public class AgentOverheadBenchmark {
+
+    public static void main(String[] args) {
+        int warmupIterations = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int dataSize = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Map<String, Object> data = BenchmarkTemplates.createData(dataSize);
+        System.out.printf("%-22s %-10s %14s %12s %12s%n", "Configuration", "Template", "ops/s", "error", "B/op");
+        for (AgentConfiguration configuration : AgentConfiguration.values()) {
+            Engine engine = BenchmarkTemplates.createEngine();
+            DebuggeeAgent agent = configuration.configure(engine);
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                Template template = engine.getTemplate(templateId);
+                Runnable render = () -> template.render(data);
+                for (int i = 0; i < warmupIterations; i++) {
+                    Measurement.run(render, iterationMillis);
+                }
+                double[] throughputs = new double[iterations];
+                double bytes = 0;
+                for (int i = 0; i < iterations; i++) {
+                    Measurement measurement = Measurement.run(render, iterationMillis);
+                    throughputs[i] = measurement.getOperationsPerSecond();
+                    bytes += measurement.getBytesPerOperation();
+                }
+                System.out.printf("%-22s %-10s %14.1f %12.1f %12.1f%n", configuration, templateId, mean(throughputs),
+                        stddev(throughputs), bytes / iterations);
+            }
+            if (agent != null) {
+                agent.setEnabled(false);
+            }
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values) {
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return values.length > 1 ? Math.sqrt(sum / (values.length - 1)) : 0;
+    }
+}
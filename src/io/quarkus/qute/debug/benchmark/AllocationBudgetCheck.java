@@ -0,0 +1,143 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TraceListenerAdapter;
+
+import java.util.Map;
+
+/**
+ * Checks the bytes allocated by the debuggee agent on the render thread against a
+ * budget per resolved node.
+ * <p>
+ * Each template of {@link BenchmarkTemplates} is rendered in a loop with each
+ * checked {@link AgentConfiguration}, and the bytes allocated by render (see
+ * {@link Measurement#getBytesPerOperation()}) are compared with the renders of an
+ * engine which is not tracked, or which has a no-op trace listener when the agent
+ * keeps its trace listener registered (the trace events are allocated by Qute).
+ * The difference is the garbage of the agent
+ * ({@code onStartTemplate}, {@code onTemplateNode}, {@code onAfterTemplateNode} and
+ * {@code onEndTemplate}), which is divided by the number of resolved nodes of the
+ * render.
+ * <p>
+ * The process exits with the status 1 if a budget is exceeded, so that it can fail
+ * a CI build when a change adds garbage on the render thread.
+ * <p>
+ * Usage: {@code AllocationBudgetCheck [renders] [dataSize]}
+ */
+public class AllocationBudgetCheck {
+
+    // Measurement noise in bytes tolerated for the whole render, not per node
+    // (TLAB refills, lazy initializations of the engines)
+    private static final double TOLERANCE = 64;
+
+    /**
+     * Allocation budgets in bytes per resolved node, per rendered template.
+     */
+    enum Budget {
+
+        TRACKED_DISABLED(AgentConfiguration.TRACKED_DISABLED, false, 0),
+
+        ENABLED_IDLE(AgentConfiguration.ENABLED_IDLE, false, 0),
+
+        // A stack frame per node and the thread events of the render (the node output to the
+        // client console is disabled): just above the measured garbage so that any new
+        // allocation is detected
+        BREAKPOINTS_ELSEWHERE(AgentConfiguration.BREAKPOINTS_ELSEWHERE, true, Map.of( //
+                BenchmarkTemplates.TEXT, 4000.0, //
+                BenchmarkTemplates.LOOPS, 1850.0, //
+                BenchmarkTemplates.INCLUDES, 1800.0, //
+                BenchmarkTemplates.TAGS, 1975.0)),
+
+        // The histograms are allocated on the first render only
+        PROFILER(AgentConfiguration.PROFILER, true, 0);
+
+        private final AgentConfiguration configuration;
+        private final boolean traced;
+        private final Map<String, Double> bytesPerNode;
+
+        Budget(AgentConfiguration configuration, boolean traced, double bytesPerNode) {
+            this(configuration, traced, Map.of( //
+                    BenchmarkTemplates.TEXT, bytesPerNode, //
+                    BenchmarkTemplates.LOOPS, bytesPerNode, //
+                    BenchmarkTemplates.INCLUDES, bytesPerNode, //
+                    BenchmarkTemplates.TAGS, bytesPerNode));
+        }
+
+        Budget(AgentConfiguration configuration, boolean traced, Map<String, Double> bytesPerNode) {
+            this.configuration = configuration;
+            this.traced = traced;
+            this.bytesPerNode = bytesPerNode;
+        }
+
+        double getBytesPerNode(String templateId) {
+            return bytesPerNode.get(templateId);
+        }
+    }
+
+    public static void main(String[] args) {
+        int renders = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int dataSize = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Map<String, Object> data = BenchmarkTemplates.createData(dataSize);
+        Engine untracedEngine = BenchmarkTemplates.createEngine();
+        Engine tracedEngine = BenchmarkTemplates.createEngine();
+        tracedEngine.addTraceListener(new TraceListenerAdapter() {
+        });
+        boolean failed = false;
+        System.out.printf("%-22s %-10s %8s %12s %12s %12s%n", "Configuration", "Template", "nodes", "B/op", "B/node",
+                "budget");
+        for (Budget budget : Budget.values()) {
+            Engine engine = BenchmarkTemplates.createEngine();
+            DebuggeeAgent agent = budget.configuration.configure(engine);
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                Template baselineTemplate = (budget.traced ? tracedEngine : untracedEngine).getTemplate(templateId);
+                Template template = engine.getTemplate(templateId);
+                int nodes = countResolvedNodes(templateId, data);
+                double baselineBytes = measure(() -> baselineTemplate.render(data), renders);
+                double bytes = measure(() -> template.render(data), renders);
+                double agentBytes = Math.max(0, bytes - baselineBytes);
+                double bytesPerNode = agentBytes / nodes;
+                double budgetPerNode = budget.getBytesPerNode(templateId);
+                boolean exceeded = agentBytes > budgetPerNode * nodes + TOLERANCE;
+                failed |= exceeded;
+                System.out.printf("%-22s %-10s %8d %12.1f %12.2f %12.1f%s%n", budget.configuration, templateId, nodes,
+                        bytes, bytesPerNode, budgetPerNode, exceeded ? " EXCEEDED" : "");
+            }
+            if (agent != null) {
+                agent.setProfilerEnabled(false);
+                agent.setEnabled(false);
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Returns the bytes allocated by the given render once warmed up.
+     */
+    private static double measure(Runnable render, int renders) {
+        // Warm up the JIT (escape analysis) and the lazy allocations of the first renders
+        Measurement.run(render, renders);
+        // Keep the lowest value to ignore the allocations of the JIT compilations and the TLAB refills
+        double bytes = Double.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            bytes = Math.min(bytes, Measurement.run(render, renders).getBytesPerOperation());
+        }
+        return bytes;
+    }
+
+    private static int countResolvedNodes(String templateId, Map<String, Object> data) {
+        Engine engine = BenchmarkTemplates.createEngine();
+        int[] nodes = new int[1];
+        engine.addTraceListener(new TraceListenerAdapter() {
+            @Override
+            public void onBeforeResolve(ResolveEvent event) {
+                nodes[0]++;
+            }
+        });
+        engine.getTemplate(templateId).render(data);
+        return Math.max(1, nodes[0]);
+    }
+}
@@ -0,0 +1,155 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.EngineBuilder;
+import io.quarkus.qute.ReflectionValueResolver;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.UserTagSectionHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representative templates used by the benchmarks: a text-heavy page, deep {@code #for}
+ * loops, nested includes and user tags. The {@link #OTHER} template is loaded but never
+ * rendered, to set breakpoints which are never hit.
+ */
+public class BenchmarkTemplates {
+
+    public static final String TEXT = "text";
+    public static final String LOOPS = "loops";
+    public static final String INCLUDES = "includes";
+    public static final String TAGS = "tags";
+    public static final String OTHER = "other";
+
+    /**
+     * The templates rendered by the benchmarks.
+     */
+    public static final List<String> RENDERED = List.of(TEXT, LOOPS, INCLUDES, TAGS);
+
+    private static final Map<String, String> CONTENTS = new HashMap<>();
+
+    static {
+        StringBuilder text = new StringBuilder("<html>\n<body>\n<h1>Hello {name}!</h1>\n");
+        for (int i = 0; i < 50; i++) {
+            text.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor ")
+                    .append("incididunt ut labore et dolore magna aliqua.</p>\n");
+            if (i % 10 == 0) {
+                text.append("<p>{name} - ").append(i).append("</p>\n");
+            }
+        }
+        text.append("</body>\n</html>");
+        CONTENTS.put(TEXT, text.toString());
+        CONTENTS.put(LOOPS, """
+                <ul>
+                {#for group in groups}
+                  <li>{group.name}
+                  {#for item in group.items}
+                    {#for tag in item.tags}
+                      <span>{item.name}: {tag}</span>
+                    {/for}
+                  {/for}
+                  </li>
+                {/for}
+                </ul>""");
+        CONTENTS.put("base", """
+                <html>
+                <head><title>{#insert title}Default Title{/}</title></head>
+                <body>{#insert}No body!{/}</body>
+                </html>""");
+        CONTENTS.put("header", """
+                <header>{#include menu /}{name}</header>""");
+        CONTENTS.put("menu", """
+                <nav>{#for group in groups}<a>{group.name}</a>{/for}</nav>""");
+        CONTENTS.put(INCLUDES, """
+                {#include base}
+                  {#title}My Title{/title}
+                  {#include header /}
+                  <div>My body.</div>
+                {/include}""");
+        CONTENTS.put("bench-user", """
+                <div class="user">{it} ({age})</div>""");
+        CONTENTS.put(TAGS, """
+                {#for group in groups}
+                  {#for item in group.items}
+                    {#user item.name age=item.age /}
+                  {/for}
+                {/for}""");
+        CONTENTS.put(OTHER, """
+                <html>
+                  {name}
+                  {#for group in groups}{group.name}{/for}
+                </html>""");
+    }
+
+    /**
+     * Creates an engine where all the benchmark templates are loaded.
+     *
+     * @return an engine where all the benchmark templates are loaded.
+     */
+    public static Engine createEngine() {
+        return createEngine(Engine.builder());
+    }
+
+    /**
+     * Creates an engine with the given builder where all the benchmark templates are loaded.
+     *
+     * @param builder the engine builder (debuggable, engine listeners...).
+     * @return an engine where all the benchmark templates are loaded.
+     */
+    public static Engine createEngine(EngineBuilder builder) {
+        Engine engine = builder
+                .addDefaults()
+                .addValueResolver(new ReflectionValueResolver())
+                .addSectionHelper(new UserTagSectionHelper.Factory("user", "bench-user"))
+                .build();
+        for (var entry : CONTENTS.entrySet()) {
+            Template template = engine.parse(entry.getValue(), null, entry.getKey());
+            engine.putTemplate(entry.getKey(), template);
+        }
+        return engine;
+    }
+
+    /**
+     * Returns the number of lines of the given template.
+     *
+     * @param templateId the template id.
+     * @return the number of lines of the given template.
+     */
+    public static int getLineCount(String templateId) {
+        return (int) CONTENTS.get(templateId).lines().count();
+    }
+
+    /**
+     * Creates the data of the templates.
+     *
+     * @param size the number of groups, items by group and tags by item.
+     * @return the data of the templates.
+     */
+    public static Map<String, Object> createData(int size) {
+        List<Group> groups = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Item> items = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                List<String> tags = new ArrayList<>(size);
+                for (int k = 0; k < size; k++) {
+                    tags.add("tag" + k);
+                }
+                items.add(new Item("item" + i + "-" + j, 20 + j, tags));
+            }
+            groups.add(new Group("group" + i, items));
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Quarkus");
+        data.put("groups", groups);
+        return data;
+    }
+
+    public record Group(String name, List<Item> items) {
+    }
+
+    public record Item(String name, int age, List<String> tags) {
+    }
+}
@@ -0,0 +1,259 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.debug.adapter.DebugServerAdapter;
+import io.quarkus.qute.debug.agent.profiler.LatencyHistogram;
+import org.eclipse.lsp4j.debug.*;
+import org.eclipse.lsp4j.debug.launch.DSPLauncher;
+import org.eclipse.lsp4j.debug.services.IDebugProtocolClient;
+import org.eclipse.lsp4j.debug.services.IDebugProtocolServer;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Headless DAP client connected to a {@link DebugServerAdapter} over a loopback socket,
+ * used to script debug sessions without an IDE and to record the latency of each
+ * request type.
+ */
+public class DebugClient implements IDebugProtocolClient, AutoCloseable {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final BlockingQueue<StoppedEventArguments> stoppedEvents;
+
+    // Threads which have stopped and have not been resumed since
+    private final Set<Integer> suspendedThreads;
+
+    private final Map<String, LatencyHistogram> latencies;
+
+    private ServerSocket serverSocket;
+    private Socket clientSocket;
+    private Socket serverSideSocket;
+    private Future<Void> serverListening;
+    private Future<Void> clientListening;
+    private IDebugProtocolServer server;
+
+    public DebugClient() {
+        this.stoppedEvents = new LinkedBlockingQueue<>();
+        this.suspendedThreads = ConcurrentHashMap.newKeySet();
+        this.latencies = Collections.synchronizedMap(new LinkedHashMap<>());
+    }
+
+    /**
+     * Connects this client to the given debug server adapter over a loopback socket.
+     *
+     * @param adapter the debug server adapter.
+     * @throws IOException if the socket cannot be opened.
+     */
+    public void connect(DebugServerAdapter adapter) throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        serverSideSocket = serverSocket.accept();
+        // The messages are small: don't let Nagle's algorithm delay them
+        clientSocket.setTcpNoDelay(true);
+        serverSideSocket.setTcpNoDelay(true);
+
+        Launcher<IDebugProtocolClient> serverLauncher = DSPLauncher.createServerLauncher(adapter,
+                serverSideSocket.getInputStream(), serverSideSocket.getOutputStream());
+        adapter.connect(serverLauncher.getRemoteProxy());
+        serverListening = serverLauncher.startListening();
+
+        Launcher<IDebugProtocolServer> clientLauncher = DSPLauncher.createClientLauncher(this,
+                clientSocket.getInputStream(), clientSocket.getOutputStream());
+        server = clientLauncher.getRemoteProxy();
+        clientListening = clientLauncher.startListening();
+    }
+
+    /**
+     * Sends a request and records its round-trip latency under the given name.
+     *
+     * @param name the request name.
+     * @param request the request to send.
+     * @return the response.
+     */
+    public <T> T request(String name, Function<IDebugProtocolServer, CompletableFuture<T>> request) {
+        long start = System.nanoTime();
+        try {
+            T response = request.apply(server).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(System.nanoTime() - start);
+            return response;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Request '" + name + "' failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Request '" + name + "' timed out after " + TIMEOUT_SECONDS + "s", e);
+        } catch (InterruptedException e) {
+            java.lang.Thread.currentThread().interrupt();
+            throw new IllegalStateException("Request '" + name + "' interrupted", e);
+        }
+    }
+
+    public Capabilities initialize() {
+        InitializeRequestArguments args = new InitializeRequestArguments();
+        args.setClientID("headless");
+        args.setAdapterID("qute");
+        return request("initialize", s -> s.initialize(args));
+    }
+
+    public void attach() {
+        request("attach", s -> s.attach(Map.of()));
+    }
+
+    public Breakpoint[] setBreakpoints(String path, int... lines) {
+        SetBreakpointsArguments args = new SetBreakpointsArguments();
+        Source source = new Source();
+        source.setPath(path);
+        args.setSource(source);
+        SourceBreakpoint[] breakpoints = new SourceBreakpoint[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            breakpoints[i] = new SourceBreakpoint();
+            breakpoints[i].setLine(lines[i]);
+        }
+        args.setBreakpoints(breakpoints);
+        return request("setBreakpoints", s -> s.setBreakpoints(args)).getBreakpoints();
+    }
+
+    public org.eclipse.lsp4j.debug.Thread[] threads() {
+        return request("threads", IDebugProtocolServer::threads).getThreads();
+    }
+
+    public StackFrame[] stackTrace(int threadId) {
+        StackTraceArguments args = new StackTraceArguments();
+        args.setThreadId(threadId);
+        return request("stackTrace", s -> s.stackTrace(args)).getStackFrames();
+    }
+
+    public Scope[] scopes(int frameId) {
+        ScopesArguments args = new ScopesArguments();
+        args.setFrameId(frameId);
+        return request("scopes", s -> s.scopes(args)).getScopes();
+    }
+
+    public Variable[] variables(int variablesReference) {
+        VariablesArguments args = new VariablesArguments();
+        args.setVariablesReference(variablesReference);
+        return request("variables", s -> s.variables(args)).getVariables();
+    }
+
+    public String evaluate(int frameId, String expression) {
+        EvaluateArguments args = new EvaluateArguments();
+        args.setFrameId(frameId);
+        args.setExpression(expression);
+        return request("evaluate", s -> s.evaluate(args)).getResult();
+    }
+
+    public void continue_(int threadId) {
+        // Without singleThread, the adapter continues all the threads
+        resumed(0);
+        ContinueArguments args = new ContinueArguments();
+        args.setThreadId(threadId);
+        request("continue", s -> s.continue_(args));
+    }
+
+    public void pause(int threadId) {
+        PauseArguments args = new PauseArguments();
+        args.setThreadId(threadId);
+        request("pause", s -> s.pause(args));
+    }
+
+    public void next(int threadId) {
+        resumed(threadId);
+        NextArguments args = new NextArguments();
+        args.setThreadId(threadId);
+        request("next", s -> s.next(args));
+    }
+
+    public void disconnect() {
+        request("disconnect", s -> s.disconnect(new DisconnectArguments()));
+    }
+
+    /**
+     * Waits for the next stopped event of a thread which is still suspended: the events of the
+     * threads which have been resumed or have exited since they stopped are skipped.
+     *
+     * @param timeoutMillis the timeout in milliseconds.
+     * @return the stopped event or null if no thread has stopped before the timeout.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    public StoppedEventArguments awaitStopped(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        StoppedEventArguments stopped;
+        do {
+            stopped = stoppedEvents.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } while (stopped != null && !suspendedThreads.contains(stopped.getThreadId()));
+        return stopped;
+    }
+
+    private void resumed(int threadId) {
+        // Removed before sending the request: a new stop of the thread is received after its response
+        if (threadId == 0) {
+            suspendedThreads.clear();
+        } else {
+            suspendedThreads.remove(threadId);
+        }
+    }
+
+    @Override
+    public void stopped(StoppedEventArguments args) {
+        suspendedThreads.add(args.getThreadId());
+        stoppedEvents.add(args);
+    }
+
+    @Override
+    public void continued(ContinuedEventArguments args) {
+        resumed(Boolean.TRUE.equals(args.getAllThreadsContinued()) ? 0 : args.getThreadId());
+    }
+
+    @Override
+    public void thread(ThreadEventArguments args) {
+        if (ThreadEventArgumentsReason.EXITED.equals(args.getReason())) {
+            suspendedThreads.remove(args.getThreadId());
+        }
+    }
+
+    /**
+     * Prints the latency percentiles of each request type.
+     *
+     * @param out the output.
+     */
+    public void printLatencies(PrintStream out) {
+        out.printf("%-16s %8s %10s %10s %10s %10s%n", "Request", "count", "p50(us)", "p90(us)", "p99(us)", "max(us)");
+        synchronized (latencies) {
+            for (var entry : latencies.entrySet()) {
+                LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+                entry.getValue().addTo(snapshot);
+                out.printf("%-16s %8d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), snapshot.getCount(),
+                        snapshot.getPercentile(50) / 1000.0, snapshot.getPercentile(90) / 1000.0,
+                        snapshot.getPercentile(99) / 1000.0, snapshot.getMaxNanos() / 1000.0);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverListening != null) {
+            serverListening.cancel(true);
+        }
+        if (clientListening != null) {
+            clientListening.cancel(true);
+        }
+        if (clientSocket != null) {
+            clientSocket.close();
+        }
+        if (serverSideSocket != null) {
+            serverSideSocket.close();
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+}
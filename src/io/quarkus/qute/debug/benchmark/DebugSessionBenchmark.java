@@ -0,0 +1,88 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.debug.adapter.DebugServerAdapter;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import org.eclipse.lsp4j.debug.Breakpoint;
+import org.eclipse.lsp4j.debug.Scope;
+import org.eclipse.lsp4j.debug.StackFrame;
+import org.eclipse.lsp4j.debug.StoppedEventArguments;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency benchmark of the {@link DebugServerAdapter}: a headless
+ * {@link DebugClient} scripts debug sessions (set breakpoints, wait for the stop,
+ * stackTrace, scopes, variables, evaluate, continue) on a render of the
+ * {@link BenchmarkTemplates#LOOPS} template, and the latency percentiles of each
+ * request type are reported.
+ * <p>
+ * The process exits with the status 1 if a session fails, so that it can run in CI.
+ * <p>
+ * Usage: {@code DebugSessionBenchmark [sessions]}
+ */
+public class DebugSessionBenchmark {
+
+    private static final String LOOPS_PATH = "src/main/resources/templates/" + BenchmarkTemplates.LOOPS + ".qute";
+
+    // Line of '<li>{group.name}' in the loops template
+    private static final int GROUP_NAME_LINE = 3;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        Engine engine = BenchmarkTemplates.createEngine();
+        Template template = engine.getTemplate(BenchmarkTemplates.LOOPS);
+        Map<String, Object> data = BenchmarkTemplates.createData(2);
+        DebuggeeAgent agent = new DebuggeeAgent();
+        agent.track(engine);
+        DebugServerAdapter adapter = new DebugServerAdapter(agent);
+
+        int failures = 0;
+        try (DebugClient client = new DebugClient()) {
+            client.connect(adapter);
+            client.initialize();
+            client.attach();
+            for (int i = 0; i < sessions; i++) {
+                try {
+                    runSession(client, template, data);
+                } catch (Exception e) {
+                    failures++;
+                    System.err.println("Session " + i + " failed: " + e.getMessage());
+                }
+            }
+            client.printLatencies(System.out);
+        }
+        System.out.println(sessions + " session(s), " + failures + " failure(s)");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    private static void runSession(DebugClient client, Template template, Map<String, Object> data) throws Exception {
+        Breakpoint[] breakpoints = client.setBreakpoints(LOOPS_PATH, GROUP_NAME_LINE);
+        if (breakpoints.length != 1 || !breakpoints[0].isVerified()) {
+            throw new IllegalStateException("The breakpoint is not verified");
+        }
+        CompletableFuture<String> render = CompletableFuture.supplyAsync(() -> template.render(data));
+        StoppedEventArguments stopped = client.awaitStopped(10_000);
+        if (stopped == null) {
+            throw new IllegalStateException("The render has not stopped at the breakpoint");
+        }
+        int threadId = stopped.getThreadId();
+        client.threads();
+        StackFrame[] frames = client.stackTrace(threadId);
+        StackFrame top = frames[0];
+        if (top.getLine() != GROUP_NAME_LINE) {
+            throw new IllegalStateException("Stopped at line " + top.getLine() + " instead of " + GROUP_NAME_LINE);
+        }
+        Scope[] scopes = client.scopes(top.getId());
+        client.variables(scopes[0].getVariablesReference());
+        client.evaluate(top.getId(), "group.name");
+        // Remove the breakpoint so that the render can complete
+        client.setBreakpoints(LOOPS_PATH);
+        client.continue_(threadId);
+        render.get(10, TimeUnit.SECONDS);
+    }
+}
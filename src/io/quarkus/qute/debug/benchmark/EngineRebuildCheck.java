@@ -0,0 +1,94 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.debug.adapter.RegisterDebugServerAdapter;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+
+/**
+ * Checks that the engines discarded by the application (dev mode reloads, engines
+ * per tenant...) are not kept in memory by the debugger.
+ * <p>
+ * Debuggable engines are built in a loop with the {@link RegisterDebugServerAdapter}
+ * as engine listener, tracked by an agent which has breakpoints (so that its trace
+ * listener is registered on them) and used to render the benchmark templates from a new
+ * thread, then discarded. The used heap after a full GC is compared between the first
+ * rebuilds (once warmed up) and the last ones, the agent must only track the engines
+ * which are still alive and no debuggee thread must be left.
+ * <p>
+ * The process exits with the status 1 if the heap grows beyond the tolerance or if
+ * discarded engines are still tracked, so that it can fail a CI build.
+ * <p>
+ * Usage: {@code EngineRebuildCheck [rebuilds]}
+ */
+public class EngineRebuildCheck {
+
+    // Heap growth tolerated between the warmup and the end of the rebuilds (JIT, lazy initializations)
+    private static final long TOLERANCE = 8 * 1024 * 1024;
+
+    private static final int WARMUP_REBUILDS = 1_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int rebuilds = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        Map<String, Object> data = BenchmarkTemplates.createData(2);
+        RegisterDebugServerAdapter adapter = new RegisterDebugServerAdapter();
+        DebuggeeAgent agent = AgentConfiguration.BREAKPOINTS_ELSEWHERE.configure(rebuildEngine(adapter, null, data));
+
+        long warmupHeap = 0;
+        for (int i = 1; i <= rebuilds; i++) {
+            rebuildEngine(adapter, agent, data);
+            if (i == Math.min(WARMUP_REBUILDS, rebuilds)) {
+                warmupHeap = usedHeapAfterGc();
+            }
+        }
+        long heap = usedHeapAfterGc();
+        int trackedEngines = agent.getTrackedEngineCount();
+        int debuggees = agent.getThreads().length;
+
+        long growth = heap - warmupHeap;
+        boolean heapExceeded = growth > TOLERANCE;
+        // The engine of the last rebuild may still be reachable from the stack
+        boolean engineLeaked = trackedEngines > 1;
+        System.out.printf("rebuilds: %d, heap after warmup: %d KB, heap at end: %d KB, growth: %d KB%s%n", rebuilds,
+                warmupHeap / 1024, heap / 1024, growth / 1024, heapExceeded ? " EXCEEDED" : "");
+        boolean debuggeeLeaked = debuggees > 0;
+        System.out.printf("tracked engines: %d%s%n", trackedEngines, engineLeaked ? " LEAKED" : "");
+        System.out.printf("debuggee threads: %d%s%n", debuggees, debuggeeLeaked ? " LEAKED" : "");
+        System.exit(heapExceeded || engineLeaked || debuggeeLeaked ? 1 : 0);
+    }
+
+    private static Engine rebuildEngine(RegisterDebugServerAdapter adapter, DebuggeeAgent agent,
+            Map<String, Object> data) throws InterruptedException {
+        Engine engine = BenchmarkTemplates.createEngine(Engine.builder()
+                .debuggable(true)
+                .addEngineListener(adapter));
+        if (agent != null) {
+            agent.track(engine);
+        }
+        // Each engine is rendered by a new thread, as the worker threads of an application would
+        Thread renderer = new Thread(() -> {
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                engine.getTemplate(templateId).render(data);
+            }
+        });
+        renderer.start();
+        renderer.join();
+        return engine;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            // Let the reference handler enqueue the cleared references
+            Thread.sleep(50);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,120 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.debug.agent.jfr.JfrTraceListener;
+import io.quarkus.qute.trace.ResolveEvent;
+import io.quarkus.qute.trace.TraceListenerAdapter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks the JFR events emitted by {@link JfrTraceListener}.
+ * <p>
+ * The benchmark templates are rendered while a recording enables the Qute events
+ * without threshold, then the recording is parsed with {@link RecordingFile}: each
+ * render must produce a {@code io.quarkus.qute.TemplateRender} event with its
+ * template id, and each resolved node a {@code io.quarkus.qute.NodeResolve} event
+ * with its template id and line. The renders done after the installation is closed
+ * must not produce events.
+ * <p>
+ * The process exits with the status 1 if an event is missing or unexpected, so that
+ * it can fail a CI build.
+ * <p>
+ * Usage: {@code JfrRecordingCheck [renders]}
+ */
+public class JfrRecordingCheck {
+
+    public static void main(String[] args) throws IOException {
+        int renders = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        Map<String, Object> data = BenchmarkTemplates.createData(2);
+        Engine engine = BenchmarkTemplates.createEngine();
+        Map<String, Integer> expectedNodes = countResolvedNodes(data);
+
+        Path file = Files.createTempFile("qute", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrTraceListener.TEMPLATE_RENDER_EVENT).withThreshold(Duration.ZERO);
+            recording.enable(JfrTraceListener.NODE_RESOLVE_EVENT).withThreshold(Duration.ZERO);
+            recording.start();
+            JfrTraceListener.Installation installation = JfrTraceListener.install(engine);
+            render(engine, data, renders);
+            installation.close();
+            // Not traced anymore
+            render(engine, data, renders);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, Integer> templateRenders = new HashMap<>();
+        Map<String, Integer> resolvedNodes = new HashMap<>();
+        boolean failed = false;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            String templateId = event.getString("templateId");
+            if (JfrTraceListener.TEMPLATE_RENDER_EVENT.equals(name)) {
+                templateRenders.merge(templateId, 1, Integer::sum);
+            } else if (JfrTraceListener.NODE_RESOLVE_EVENT.equals(name)) {
+                if (event.getInt("line") <= 0) {
+                    System.out.println("Node event without line: " + event);
+                    failed = true;
+                }
+                resolvedNodes.merge(templateId, 1, Integer::sum);
+            }
+        }
+        Files.deleteIfExists(file);
+
+        System.out.printf("%-12s %10s %10s%n", "Template", "events", "expected");
+        for (String templateId : BenchmarkTemplates.RENDERED) {
+            int actual = templateRenders.getOrDefault(templateId, 0);
+            System.out.printf("%-12s %10d %10d%s%n", templateId, actual, renders, actual != renders ? " MISMATCH" : "");
+            failed |= actual != renders;
+        }
+        // The nodes of the included templates / user tags are reported with their own template id
+        System.out.printf("%-12s %10s %10s%n", "Node origin", "events", "expected");
+        for (var entry : expectedNodes.entrySet()) {
+            int actual = resolvedNodes.getOrDefault(entry.getKey(), 0);
+            int expected = entry.getValue() * renders;
+            System.out.printf("%-12s %10d %10d%s%n", entry.getKey(), actual, expected, actual != expected ? " MISMATCH" : "");
+            failed |= actual != expected;
+        }
+        if (!expectedNodes.keySet().containsAll(resolvedNodes.keySet())) {
+            System.out.println("Unexpected node events: " + resolvedNodes.keySet());
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void render(Engine engine, Map<String, Object> data, int renders) {
+        for (int i = 0; i < renders; i++) {
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                engine.getTemplate(templateId).render(data);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes resolved by one render of each benchmark template, by template id of the node.
+     */
+    private static Map<String, Integer> countResolvedNodes(Map<String, Object> data) {
+        Engine engine = BenchmarkTemplates.createEngine();
+        Map<String, Integer> nodes = new HashMap<>();
+        engine.addTraceListener(new TraceListenerAdapter() {
+            @Override
+            public void onBeforeResolve(ResolveEvent event) {
+                nodes.merge(event.getTemplateNode().getOrigin().getTemplateId(), 1, Integer::sum);
+            }
+        });
+        for (String templateId : BenchmarkTemplates.RENDERED) {
+            engine.getTemplate(templateId).render(data);
+        }
+        return nodes;
+    }
+}
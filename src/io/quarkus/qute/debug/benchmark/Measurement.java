@@ -0,0 +1,86 @@
+package io.quarkus.qute.debug.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the throughput and the bytes allocated by the current thread for an operation,
+ * like the JMH 'thrpt' mode with the 'gc.alloc.rate.norm' metric of the GC profiler.
+ */
+public class Measurement {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private final long operations;
+    private final long nanos;
+    private final long allocatedBytes;
+
+    private Measurement(long operations, long nanos, long allocatedBytes) {
+        this.operations = operations;
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes allocated so far by the current thread.
+     */
+    public static long getAllocatedBytes() {
+        return THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Runs the given operation in a loop during the given time.
+     *
+     * @param operation the operation to measure.
+     * @param durationMillis the duration in milliseconds.
+     * @return the measurement.
+     */
+    public static Measurement run(Runnable operation, long durationMillis) {
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        long operations = 0;
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        long now;
+        do {
+            // Check the time every 16 operations
+            for (int i = 0; i < 16; i++) {
+                operation.run();
+            }
+            operations += 16;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long bytes = getAllocatedBytes() - startBytes;
+        return new Measurement(operations, now - start, bytes);
+    }
+
+    /**
+     * Runs the given operation the given number of times.
+     *
+     * @param operation the operation to measure.
+     * @param operations the number of operations.
+     * @return the measurement.
+     */
+    public static Measurement run(Runnable operation, int operations) {
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            operation.run();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Measurement(operations, nanos, getAllocatedBytes() - startBytes);
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public double getOperationsPerSecond() {
+        return operations * 1_000_000_000.0 / nanos;
+    }
+
+    public double getBytesPerOperation() {
+        return (double) allocatedBytes / operations;
+    }
+}
@@ -0,0 +1,299 @@
+package io.quarkus.qute.debug.benchmark;
+
+import io.quarkus.qute.Engine;
+import io.quarkus.qute.Template;
+import io.quarkus.qute.debug.adapter.DebugServerAdapter;
+import io.quarkus.qute.debug.agent.DebuggeeAgent;
+import io.quarkus.qute.debug.agent.profiler.LatencyHistogram;
+import org.eclipse.lsp4j.debug.StoppedEventArguments;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load driver which renders the templates of {@link BenchmarkTemplates} from N
+ * platform or virtual threads while the debuggee agent is attached.
+ * <p>
+ * In stress mode, a scripted {@link DebugClient} concurrently sets and clears
+ * breakpoints, pauses, steps and resumes the render threads, so that the
+ * concurrency of the agent is exercised. The driver reports the render throughput
+ * and tail latency and detects:
+ * <ul>
+ * <li>exceptions thrown by the renders or by the debug requests,</li>
+ * <li>render threads which don't terminate once the client has resumed them (lost threads),</li>
+ * <li>threads still reported by the debugger once all renders are done (stale threads),</li>
+ * <li>deadlocked threads (see {@link ThreadMXBean#findDeadlockedThreads()}).</li>
+ * </ul>
+ * The process exits with the status 1 if a problem is detected.
+ * <p>
+ * The stopped events of the threads which have been resumed since are skipped (see
+ * {@link DebugClient#awaitStopped(long)}). A thread can still be resumed by a continue
+ * while its stopped event is in flight: the step or continue is then rejected because
+ * the thread is not suspended, which is counted as a stale stopped event and not as an error.
+ * Likewise, a pause of a thread which has finished its render since it has been listed is
+ * rejected and counted as a stale pause.
+ * <p>
+ * Usage: {@code RenderLoadDriver [threads] [virtual] [durationSeconds] [dataSize] [stress]}
+ */
+public class RenderLoadDriver {
+
+    private static final String TEMPLATES_PATH = "src/main/resources/templates/";
+
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private static final long JOIN_TIMEOUT_MILLIS = 10_000;
+
+    private final Engine engine;
+    private final Map<String, Object> data;
+    private final LatencyHistogram renderLatencies;
+    private final LongAdder renders;
+    private final LongAdder errorCount;
+    private final LongAdder staleStops;
+    private final LongAdder stalePauses;
+    private final Queue<Throwable> errors;
+    private volatile boolean running;
+
+    RenderLoadDriver(Engine engine, Map<String, Object> data) {
+        this.engine = engine;
+        this.data = data;
+        this.renderLatencies = new LatencyHistogram();
+        this.renders = new LongAdder();
+        this.errorCount = new LongAdder();
+        this.staleStops = new LongAdder();
+        this.stalePauses = new LongAdder();
+        this.errors = new ConcurrentLinkedQueue<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        boolean virtual = args.length > 1 && Boolean.parseBoolean(args[1]);
+        long durationSeconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        int dataSize = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        boolean stress = args.length <= 4 || Boolean.parseBoolean(args[4]);
+
+        Engine engine = BenchmarkTemplates.createEngine();
+        DebuggeeAgent agent = new DebuggeeAgent();
+        agent.track(engine);
+        RenderLoadDriver driver = new RenderLoadDriver(engine, BenchmarkTemplates.createData(dataSize));
+        boolean failed;
+        try (DebugClient client = new DebugClient()) {
+            client.connect(new DebugServerAdapter(agent));
+            client.initialize();
+            client.attach();
+            failed = driver.run(threads, virtual, TimeUnit.SECONDS.toMillis(durationSeconds), stress ? client : null);
+            client.printLatencies(System.out);
+            client.disconnect();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Runs the load and prints the report.
+     *
+     * @param threads the number of render threads.
+     * @param virtual true to render with virtual threads.
+     * @param durationMillis the duration of the load.
+     * @param client the client which stresses the agent or null.
+     * @return true if a problem has been detected.
+     */
+    boolean run(int threads, boolean virtual, long durationMillis, DebugClient client) throws InterruptedException {
+        running = true;
+        Thread.Builder builder = virtual ? Thread.ofVirtual().name("render-", 0) : Thread.ofPlatform().name("render-", 0);
+        List<Thread> workers = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers.add(builder.start(() -> renderLoop(virtual)));
+        }
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long deadline = System.currentTimeMillis() + durationMillis;
+        long[] deadlocked = null;
+        while (deadlocked == null && System.currentTimeMillis() < deadline) {
+            if (client != null) {
+                stress(client);
+            } else {
+                Thread.sleep(100);
+            }
+            deadlocked = threadMXBean.findDeadlockedThreads();
+        }
+        running = false;
+
+        if (client != null && deadlocked == null) {
+            release(client, workers);
+        }
+        int lost = 0;
+        for (Thread worker : workers) {
+            worker.join(deadlocked == null ? JOIN_TIMEOUT_MILLIS : 1);
+            if (worker.isAlive()) {
+                lost++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (deadlocked == null) {
+            deadlocked = threadMXBean.findDeadlockedThreads();
+        }
+        // Threads still reported by the debugger once all renders are done
+        int stale = 0;
+        if (client != null && lost == 0 && deadlocked == null) {
+            try {
+                stale = client.threads().length;
+            } catch (IllegalStateException e) {
+                error(e);
+            }
+        }
+
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+        renderLatencies.addTo(snapshot);
+        System.out.printf("%d %s thread(s), %d render(s), %.1f renders/s%n", threads, virtual ? "virtual" : "platform",
+                renders.sum(), renders.sum() * 1e9 / elapsed);
+        System.out.printf("Render latency: p50=%.1fus p90=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                snapshot.getPercentile(50) / 1000.0, snapshot.getPercentile(90) / 1000.0,
+                snapshot.getPercentile(99) / 1000.0, snapshot.getPercentile(99.9) / 1000.0,
+                snapshot.getMaxNanos() / 1000.0);
+        System.out.println("Errors: " + errorCount.sum());
+        if (client != null) {
+            System.out.println("Stale stopped events: " + staleStops.sum());
+            System.out.println("Stale pauses: " + stalePauses.sum());
+        }
+        for (Throwable error : errors) {
+            error.printStackTrace(System.out);
+        }
+        System.out.println("Lost threads: " + lost);
+        if (lost > 0) {
+            for (Thread worker : workers) {
+                if (worker.isAlive()) {
+                    printStackTrace(worker.getName(), worker.getStackTrace());
+                }
+            }
+        }
+        System.out.println("Stale debugger threads: " + stale);
+        System.out.println("Deadlocked threads: " + (deadlocked != null ? deadlocked.length : 0));
+        if (deadlocked != null) {
+            for (ThreadInfo info : threadMXBean.getThreadInfo(deadlocked, true, true)) {
+                System.out.print(info);
+            }
+        }
+        return errorCount.sum() > 0 || lost > 0 || stale > 0 || deadlocked != null;
+    }
+
+    private void renderLoop(boolean virtual) {
+        List<Template> templates = new ArrayList<>();
+        for (String templateId : BenchmarkTemplates.RENDERED) {
+            templates.add(engine.getTemplate(templateId));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Template template = templates.get(random.nextInt(templates.size()));
+            long start = System.nanoTime();
+            try {
+                template.render(data);
+                renderLatencies.record(System.nanoTime() - start);
+                renders.increment();
+            } catch (Throwable e) {
+                error(e);
+            }
+            if (virtual) {
+                // Renders don't block: let the other virtual threads (e.g. the DAP requests) use the carrier threads
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Sends a random debug request: set or clear breakpoints, pause, step or resume.
+     */
+    private void stress(DebugClient client) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String templateId = BenchmarkTemplates.RENDERED.get(random.nextInt(BenchmarkTemplates.RENDERED.size()));
+        try {
+            switch (random.nextInt(6)) {
+                case 0 -> client.setBreakpoints(TEMPLATES_PATH + templateId + ".qute",
+                        1 + random.nextInt(BenchmarkTemplates.getLineCount(templateId)));
+                case 1 -> client.setBreakpoints(TEMPLATES_PATH + templateId + ".qute");
+                case 2 -> {
+                    org.eclipse.lsp4j.debug.Thread[] threads = client.threads();
+                    try {
+                        client.pause(threads.length > 0 ? threads[random.nextInt(threads.length)].getId() : 0);
+                    } catch (IllegalStateException e) {
+                        if (!isRejected(e, " doesn't exist.")) {
+                            throw e;
+                        }
+                        // The thread has finished its render since it has been listed
+                        stalePauses.increment();
+                    }
+                }
+                default -> {
+                    StoppedEventArguments stopped = client.awaitStopped(10);
+                    if (stopped != null) {
+                        int threadId = stopped.getThreadId();
+                        try {
+                            client.stackTrace(threadId);
+                            if (random.nextBoolean()) {
+                                client.next(threadId);
+                            } else {
+                                client.continue_(threadId);
+                            }
+                        } catch (IllegalStateException e) {
+                            if (!isRejected(e, " is not suspended.")) {
+                                throw e;
+                            }
+                            // The thread has been resumed while its stopped event was in flight
+                            staleStops.increment();
+                        }
+                    }
+                }
+            }
+        } catch (IllegalStateException e) {
+            error(e);
+        }
+    }
+
+    /**
+     * Clears the breakpoints and resumes all threads until the render threads terminate.
+     */
+    private void release(DebugClient client, List<Thread> workers) throws InterruptedException {
+        try {
+            for (String templateId : BenchmarkTemplates.RENDERED) {
+                client.setBreakpoints(TEMPLATES_PATH + templateId + ".qute");
+            }
+            long deadline = System.currentTimeMillis() + JOIN_TIMEOUT_MILLIS;
+            while (System.currentTimeMillis() < deadline && workers.stream().anyMatch(Thread::isAlive)) {
+                // A step or a pause can suspend a thread again after a resume
+                client.continue_(0);
+                client.awaitStopped(10);
+            }
+        } catch (IllegalStateException e) {
+            error(e);
+        }
+    }
+
+    private static boolean isRejected(IllegalStateException e, String reason) {
+        // The error code of the response is not transmitted by the debug protocol, only its message
+        return e.getCause() instanceof ResponseErrorException responseError
+                && responseError.getMessage().endsWith(reason);
+    }
+
+    private void error(Throwable e) {
+        errorCount.increment();
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(e);
+        }
+    }
+
+    private static void printStackTrace(String name, StackTraceElement[] stackTrace) {
+        System.out.println("\"" + name + "\"");
+        for (StackTraceElement element : stackTrace) {
+            System.out.println("\tat " + element);
+        }
+    }
+}